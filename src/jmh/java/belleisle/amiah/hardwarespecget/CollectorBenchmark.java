@@ -0,0 +1,55 @@
+package belleisle.amiah.hardwarespecget;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of each discovered {@link HardwareProbe}, and of taking a full snapshot.
+ * <p>
+ * Results depend on the host's hardware, so they are only comparable between
+ * runs on the same machine. Types with no supported probe on the host fail
+ * their setup, and the other types are still measured.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CollectorBenchmark {
+
+    /**
+     * The probe of one type, so each type is measured separately.
+     */
+    @State(Scope.Benchmark)
+    public static class ProbeState {
+
+        // Every type when no values are given
+        @Param
+        public NodeInfo.HardwareType type;
+
+        HardwareProbe probe;
+
+        @Setup
+        public void setUp() {
+            probe = HardwareCollector.getProbes().get(type);
+            if (probe == null) {
+                throw new IllegalStateException("No supported probe for " + type);
+            }
+        }
+
+    }
+
+    @Benchmark
+    public HardwareProbe.Result probe(ProbeState state) {
+        return state.probe.probeWithIdentities();
+    }
+
+    @Benchmark
+    public HardwareSnapshot snapshot() {
+        return HardwareCollector.takeSnapshot();
+    }
+
+}
@@ -0,0 +1,68 @@
+package belleisle.amiah.hardwarespecget;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures name normalization on vendor strings as OSHI reports them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NameBenchmark {
+
+    // Names as reported by OSHI on real systems
+    private static final String[] VENDOR_NAMES = {
+            "Intel(R) Core(TM) i7-9700K CPU @ 3.60GHz",
+            "Intel(R) Xeon(R) Gold 6248R CPU @ 3.00GHz",
+            "AMD Ryzen 9 5950X 16-Core Processor",
+            "Advanced Micro Devices, Inc. [AMD/ATI] Navi 21 [Radeon RX 6800/6800 XT / 6900 XT]",
+            "NVIDIA Corporation GA104 [GeForce RTX 3070] (rev a1)",
+            "Intel Corporation CoffeeLake-S GT2 [UHD Graphics 630]",
+            "Intel(R) UHD Graphics 630",
+            "Samsung SSD 970 EVO Plus 1TB",
+            "WDC WD10EZEX-08WN4A0",
+            "KINGSTON SA2000M8500G"
+    };
+
+    private static final String[] USER_NAMES = {
+            "amiah",
+            "JOHN SMITH",
+            "build agent service account",
+            "root"
+    };
+
+    @Benchmark
+    public void beatifyName(Blackhole blackhole) {
+        for (String name : VENDOR_NAMES) {
+            blackhole.consume(HardwareCollector.beatifyName(name));
+        }
+    }
+
+    @Benchmark
+    public void beatifyNameUncached(Blackhole blackhole) {
+        for (String name : VENDOR_NAMES) {
+            blackhole.consume(NameNormalizer.normalize(name, true, false));
+        }
+    }
+
+    @Benchmark
+    public void toTitle(Blackhole blackhole) {
+        for (String name : USER_NAMES) {
+            blackhole.consume(NameNormalizer.toTitle(name));
+        }
+    }
+
+    @Benchmark
+    public void toTitleUncached(Blackhole blackhole) {
+        for (String name : USER_NAMES) {
+            blackhole.consume(NameNormalizer.normalize(name, false, true));
+        }
+    }
+
+}
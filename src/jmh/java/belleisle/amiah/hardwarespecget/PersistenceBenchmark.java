@@ -0,0 +1,88 @@
+package belleisle.amiah.hardwarespecget;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures JSON round trips of the saved node lists at different layout sizes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PersistenceBenchmark {
+
+    // Fixed seed so every run saves and loads the same layouts
+    private static final long SEED = 42;
+
+    @Param({"10", "100", "1000", "10000"})
+    private int entries;
+
+    private final JsonFactory factory = new JsonFactory();
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private List<NodeInfo> left;
+    private List<NodeInfo> right;
+    private String json;
+
+    @Setup
+    public void setup() throws IOException {
+        Random random = new Random(SEED);
+        left = createNodeInfos(random, entries / 2);
+        right = createNodeInfos(random, entries - entries / 2);
+        json = save();
+    }
+
+    private static List<NodeInfo> createNodeInfos(Random random, int count) {
+        NodeInfo.HardwareType[] types = NodeInfo.HardwareType.values();
+        ArrayList<NodeInfo> infos = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            NodeInfo info = new NodeInfo(types[random.nextInt(types.length)], random.nextInt(8), random.nextBoolean());
+            if (info.getType() == NodeInfo.HardwareType.USERDATA) {
+                info.setUserTitle("Custom Entry " + i);
+                info.setUserContent("User provided content for entry " + i);
+            }
+            infos.add(info);
+        }
+        return infos;
+    }
+
+    @Benchmark
+    public String save() throws IOException {
+        out.reset();
+        try (JsonGenerator generator = factory.createGenerator(out, JsonEncoding.UTF8)) {
+            generator.useDefaultPrettyPrinter();
+            FileUtil.writeNodeLists(generator, left, right);
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public List<NodeInfo> load() throws IOException {
+        ArrayList<NodeInfo> loadedLeft = new ArrayList<>();
+        ArrayList<NodeInfo> loadedRight = new ArrayList<>();
+        FileUtil.readNodeLists(new StringReader(json), loadedLeft, loadedRight);
+        return loadedLeft;
+    }
+
+    @Benchmark
+    public List<NodeInfo> roundTrip() throws IOException {
+        ArrayList<NodeInfo> loadedLeft = new ArrayList<>();
+        ArrayList<NodeInfo> loadedRight = new ArrayList<>();
+        FileUtil.readNodeLists(new StringReader(save()), loadedLeft, loadedRight);
+        return loadedLeft;
+    }
+
+}
@@ -0,0 +1,203 @@
+package belleisle.amiah.hardwarespecget;
+
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.scene.image.Image;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Saves the layout and icon on a single background thread once the user
+ * has stopped editing for a quiet period.
+ * <p>
+ * Every edit marks the layout as dirty, which restarts the quiet period. A burst
+ * of edits therefore results in a single write. The quiet period can be set with
+ * the {@value #QUIET_PERIOD_PROPERTY} system property, in milliseconds.
+ * </p>
+ * <p>
+ * Nothing is written until {@link #setLoaded()} is called. Until the saved layout
+ * has been loaded the lists are empty, and writing them would replace it.
+ * </p>
+ */
+public class AutosaveWriter {
+
+    public static final String QUIET_PERIOD_PROPERTY = "hardwarespecget.autosave.quietMillis";
+    private static final long DEFAULT_QUIET_PERIOD = 1500;
+
+    private final NodeList left;
+    private final NodeList right;
+    private final Supplier<Image> iconSupplier;
+    private final long quietPeriod;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "autosave");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final SimpleObjectProperty<SaveStatus> status = new SimpleObjectProperty<>(SaveStatus.SAVED);
+
+    // Only accessed from the JavaFX application thread
+    private ScheduledFuture<?> pendingWrite = null;
+    private boolean loaded = false;
+    // The shortest delay requested before the layout was loaded, or -1 if none
+    private long deferredDelay = -1;
+    // The most recent state to write, replaced by each edit
+    private volatile SaveState pendingState = null;
+
+    /**
+     * @param left The left list to save
+     * @param right The right list to save
+     * @param iconSupplier Supplies the icon to save
+     */
+    public AutosaveWriter(NodeList left, NodeList right, Supplier<Image> iconSupplier) {
+        this.left = left;
+        this.right = right;
+        this.iconSupplier = iconSupplier;
+        this.quietPeriod = Long.getLong(QUIET_PERIOD_PROPERTY, DEFAULT_QUIET_PERIOD);
+    }
+
+    /**
+     * Marks the layout as changed. It will be written once no further changes
+     * have been made for the quiet period. Must be called from the JavaFX
+     * application thread.
+     */
+    public void markDirty() {
+        schedule(quietPeriod);
+    }
+
+    /**
+     * Writes the layout as soon as possible, without waiting for the quiet
+     * period. Must be called from the JavaFX application thread.
+     */
+    public void saveNow() {
+        schedule(0);
+    }
+
+    /**
+     * Allows writes, once the saved layout has been loaded into the lists.
+     * Edits made before then are written now, after their delay. Must be called
+     * from the JavaFX application thread.
+     */
+    public void setLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (deferredDelay >= 0) {
+            schedule(deferredDelay);
+            deferredDelay = -1;
+        }
+    }
+
+    /**
+     * Writes any pending changes, then stops the writer thread. Waits a
+     * short time for the write to finish.
+     */
+    public void close() {
+        if (pendingWrite != null) {
+            pendingWrite.cancel(false);
+        }
+        executor.execute(this::write);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return The status of the most recent save. Only changes on the JavaFX application thread.
+     */
+    public ReadOnlyObjectProperty<SaveStatus> statusProperty() {
+        return status;
+    }
+
+    private void schedule(long delay) {
+        if (!loaded) {
+            deferredDelay = deferredDelay < 0 ? delay : Math.min(deferredDelay, delay);
+            status.set(SaveStatus.UNSAVED);
+            return;
+        }
+        // Capture the state now, since the node lists may only be read on this thread
+        pendingState = captureState();
+        status.set(SaveStatus.UNSAVED);
+        if (pendingWrite != null) {
+            pendingWrite.cancel(false);
+        }
+        pendingWrite = executor.schedule(this::write, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private SaveState captureState() {
+        List<NodeInfo> leftInfos = new ArrayList<>();
+        List<NodeInfo> rightInfos = new ArrayList<>();
+        for (NodeInfo info : left.getNodeInfos()) {
+            leftInfos.add(info.copy());
+        }
+        for (NodeInfo info : right.getNodeInfos()) {
+            rightInfos.add(info.copy());
+        }
+        // The default icon isn't saved
+        Image icon = iconSupplier.get();
+        String iconUrl = (icon == null || icon.equals(HardwareSpecApplication.DEFAULT_ICON)) ? null : icon.getUrl();
+        return new SaveState(leftInfos, rightInfos, iconUrl);
+    }
+
+    // Runs on the writer thread
+    private void write() {
+        SaveState state = pendingState;
+        pendingState = null;
+        if (state == null) {
+            return;
+        }
+
+        SaveStatus result = SaveStatus.SAVED;
+        try {
+            FileUtil.writeEntriesFile(state.left(), state.right());
+            if (state.iconUrl() != null) {
+                FileUtil.writeImageFile(state.iconUrl());
+            }
+        }
+        catch (IOException | SecurityException e) {
+            result = SaveStatus.FAILED;
+        }
+
+        SaveStatus finalResult = result;
+        Platform.runLater(() -> {
+            // A newer edit is still waiting to be written
+            if (pendingState == null) {
+                status.set(finalResult);
+            }
+        });
+    }
+
+    // Used to pass the captured layout to the writer thread
+    private record SaveState(List<NodeInfo> left, List<NodeInfo> right, String iconUrl) {}
+
+    // Enums
+    public enum SaveStatus {
+        SAVED("Saved"),
+        UNSAVED("Unsaved changes"),
+        FAILED("Autosave failed");
+
+        private final String valueAsString;
+
+        private SaveStatus(String valueAsString) {
+            this.valueAsString = valueAsString;
+        }
+
+        public String getValueAsString() {
+            return valueAsString;
+        }
+    }
+
+}
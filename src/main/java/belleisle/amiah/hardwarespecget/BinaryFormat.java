@@ -0,0 +1,503 @@
+package belleisle.amiah.hardwarespecget;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact, versioned binary format for saved layouts and snapshots.
+ * <p>
+ * A file is a fixed size header, followed by fixed width records, followed by a
+ * string table. Records refer to strings by their offset in the string table, and
+ * identical strings are only stored once. Layouts are read through a view, and
+ * their strings are only decoded when they are asked for.
+ * </p>
+ * <p>
+ * Files are read onto the heap rather than mapped: a mapping is only released
+ * when it is garbage collected, and on Windows the file can't be replaced by
+ * the next save while it is mapped.
+ * </p>
+ * <p>
+ * Hardware types are stored by their ordinal in {@link NodeInfo.HardwareType}.
+ * Records with an unknown ordinal are skipped.
+ * </p>
+ * <p>
+ * Version 2 added the identity of each snapshot entry, and a type record for
+ * every type a snapshot knows about, which records whether it is stale or
+ * unavailable. Version 1 files can still be read, and their snapshot entries
+ * have no identities and are never stale.
+ * </p>
+ */
+public abstract class BinaryFormat {
+
+    // Identifies a binary file. JSON files can never start with these bytes.
+    private static final byte[] MAGIC = {'H', 'S', 'G', 'B'};
+    private static final short VERSION = 2;
+    // The oldest version that can still be read
+    private static final short MIN_VERSION = 1;
+
+    // Kinds of file
+    private static final short KIND_LAYOUT = 1;
+    private static final short KIND_SNAPSHOT = 2;
+
+    /* Header:
+     *  0  magic               4 bytes
+     *  4  version             u16
+     *  6  kind                u16
+     *  8  record count        i32
+     * 12  left list count     i32 (layouts only)
+     * 16  timestamp           i64 (snapshots only)
+     * 24  string table offset i32
+     * 28  reserved            i32
+     */
+    private static final int HEADER_SIZE = 32;
+
+    /* Layout record:
+     *  0  type ordinal        u8
+     *  1  shown               u8
+     *  2  reserved            u16
+     *  4  index               i32
+     *  8  colour              i32 (0xRRGGBB, or -1 if not a valid colour)
+     * 12  user title ref      i32 (-1 if null)
+     * 16  user content ref    i32 (-1 if null)
+     */
+    private static final int LAYOUT_RECORD_SIZE = 20;
+
+    /* Snapshot record:
+     *  0  type ordinal        u8
+     *  1  flags               u8 (type records only, version 2 and later)
+     *  2  reserved            u16
+     *  4  index               i32 (-1 for a type record)
+     *  8  value ref           i32 (-1 for a type record)
+     * 12  identity ref        i32 (-1 if unknown, version 2 and later)
+     *
+     * Type records say which types the snapshot knows about, even without
+     * entries, and hold the flags below.
+     */
+    private static final int SNAPSHOT_RECORD_SIZE = 16;
+    private static final int SNAPSHOT_RECORD_SIZE_V1 = 12;
+    private static final int TYPE_RECORD_INDEX = -1;
+    private static final int FLAG_STALE = 1;
+    private static final int FLAG_UNAVAILABLE = 1 << 1;
+
+    // Used in place of a string table reference for null strings
+    private static final int NULL_REF = -1;
+
+    // Cached, since values() copies the array on every call
+    private static final NodeInfo.HardwareType[] TYPES = NodeInfo.HardwareType.values();
+
+    /**
+     * Checks whether a file starts with the binary format's header.
+     *
+     * @param file The file to check
+     * @return true if the file is in the binary format, false otherwise
+     * @throws IOException If the file can't be read
+     */
+    public static boolean isBinary(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return Arrays.equals(in.readNBytes(MAGIC.length), MAGIC);
+        }
+    }
+
+    /* ======= *
+     * Layouts *
+     * ======= */
+
+    /**
+     * Writes the left and right lists in the binary format.
+     *
+     * @param out The stream to write to. It isn't closed.
+     * @param left The NodeInfos of the left list
+     * @param right The NodeInfos of the right list
+     * @throws IOException If unable to write
+     */
+    public static void writeLayout(OutputStream out, List<NodeInfo> left, List<NodeInfo> right) throws IOException {
+        StringTable strings = new StringTable();
+        int count = left.size() + right.size();
+        ByteBuffer records = ByteBuffer.allocate(count * LAYOUT_RECORD_SIZE);
+
+        for (int i = 0; i < count; i++) {
+            NodeInfo info = i < left.size() ? left.get(i) : right.get(i - left.size());
+            records.put((byte) info.getType().ordinal());
+            records.put((byte) (info.getIsShown() ? 1 : 0));
+            records.putShort((short) 0);
+            records.putInt(info.getIndex());
+            records.putInt(parseColor(info.getMainColor()));
+            records.putInt(strings.add(info.getUserTitle()));
+            records.putInt(strings.add(info.getUserContent()));
+        }
+
+        writeFile(out, KIND_LAYOUT, count, left.size(), 0, records, strings);
+    }
+
+    /**
+     * Reads a layout file. Strings are decoded when they are asked for.
+     *
+     * @param file The file to read
+     * @return A view of the layout in the file
+     * @throws IOException If the file can't be read or isn't a binary layout
+     */
+    public static LayoutView readLayout(Path file) throws IOException {
+        ByteBuffer buffer = load(file, KIND_LAYOUT);
+        return new LayoutView(buffer);
+    }
+
+    /**
+     * A read only view of a layout file. Records are read from the file's
+     * buffer when they are asked for.
+     */
+    public static class LayoutView {
+
+        private final ByteBuffer buffer;
+        private final int count;
+        private final int leftCount;
+        private final int stringTable;
+
+        // Used by readLayout
+        private LayoutView(ByteBuffer buffer) throws IOException {
+            this.buffer = buffer;
+            this.count = buffer.getInt(8);
+            this.leftCount = buffer.getInt(12);
+            this.stringTable = buffer.getInt(24);
+            checkBounds(buffer, count, LAYOUT_RECORD_SIZE, stringTable);
+        }
+
+        /**
+         * Creates NodeInfo objects for every record with a known type.
+         *
+         * @param left The list to add the left list's NodeInfos to
+         * @param right The list to add the right list's NodeInfos to
+         * @throws IOException If a string reference is invalid
+         */
+        public void toNodeInfos(List<NodeInfo> left, List<NodeInfo> right) throws IOException {
+            for (int i = 0; i < count; i++) {
+                NodeInfo.HardwareType type = getType(i);
+                if (type == null) {
+                    continue;
+                }
+                NodeInfo info = new NodeInfo(type, getIndex(i), isShown(i));
+                String color = getColor(i);
+                if (color != null) {
+                    info.setMainColor(color);
+                }
+                // Only user data has strings worth decoding
+                if (type == NodeInfo.HardwareType.USERDATA) {
+                    info.setUserTitle(getUserTitle(i));
+                    info.setUserContent(getUserContent(i));
+                }
+                (i < leftCount ? left : right).add(info);
+            }
+        }
+
+        /**
+         * @return The number of records, in both lists
+         */
+        public int size() {
+            return count;
+        }
+
+        /**
+         * @param i The record to check
+         * @return true if the record belongs to the left list
+         */
+        public boolean isLeft(int i) {
+            return i < leftCount;
+        }
+
+        /**
+         * @param i The record to read
+         * @return The record's type, or {@code null} if the type isn't known
+         */
+        public NodeInfo.HardwareType getType(int i) {
+            return typeFromOrdinal(buffer.get(record(i)) & 0xFF);
+        }
+
+        public boolean isShown(int i) {
+            return buffer.get(record(i) + 1) != 0;
+        }
+
+        public int getIndex(int i) {
+            return buffer.getInt(record(i) + 4);
+        }
+
+        /**
+         * @param i The record to read
+         * @return The colour as a hex string, or {@code null} if none was stored
+         */
+        public String getColor(int i) {
+            int color = buffer.getInt(record(i) + 8);
+            return color < 0 ? null : String.format("#%06x", color);
+        }
+
+        public String getUserTitle(int i) throws IOException {
+            return readString(buffer, stringTable, buffer.getInt(record(i) + 12));
+        }
+
+        public String getUserContent(int i) throws IOException {
+            return readString(buffer, stringTable, buffer.getInt(record(i) + 16));
+        }
+
+        private int record(int i) {
+            return HEADER_SIZE + i * LAYOUT_RECORD_SIZE;
+        }
+
+    }
+
+    /* ========= *
+     * Snapshots *
+     * ========= */
+
+    /**
+     * Writes a snapshot in the binary format.
+     *
+     * @param out The stream to write to. It isn't closed.
+     * @param snapshot The snapshot to write
+     * @throws IOException If unable to write
+     */
+    public static void writeSnapshot(OutputStream out, HardwareSnapshot snapshot) throws IOException {
+        StringTable strings = new StringTable();
+        int count = snapshot.getCollectedTypes().size() + snapshot.getUnavailableTypes().size();
+        for (NodeInfo.HardwareType type : snapshot.getCollectedTypes()) {
+            count += snapshot.getCount(type);
+        }
+        ByteBuffer records = ByteBuffer.allocate(count * SNAPSHOT_RECORD_SIZE);
+
+        for (NodeInfo.HardwareType type : snapshot.getUnavailableTypes()) {
+            putTypeRecord(records, type, FLAG_UNAVAILABLE);
+        }
+        for (NodeInfo.HardwareType type : snapshot.getCollectedTypes()) {
+            putTypeRecord(records, type, snapshot.isStale(type) ? FLAG_STALE : 0);
+            List<String> values = snapshot.getValues(type);
+            for (int i = 0; i < values.size(); i++) {
+                records.put((byte) type.ordinal());
+                records.put(new byte[3]);
+                records.putInt(i);
+                records.putInt(strings.add(values.get(i)));
+                records.putInt(strings.add(snapshot.getIdentity(type, i)));
+            }
+        }
+
+        writeFile(out, KIND_SNAPSHOT, count, 0, snapshot.getTimestamp(), records, strings);
+    }
+
+    private static void putTypeRecord(ByteBuffer records, NodeInfo.HardwareType type, int flags) {
+        records.put((byte) type.ordinal());
+        records.put((byte) flags);
+        records.putShort((short) 0);
+        records.putInt(TYPE_RECORD_INDEX);
+        records.putInt(NULL_REF);
+        records.putInt(NULL_REF);
+    }
+
+    /**
+     * Reads a snapshot file. Values of unknown types are skipped.
+     *
+     * @param file The file to read
+     * @return The snapshot in the file
+     * @throws IOException If the file can't be read or isn't a binary snapshot
+     */
+    public static HardwareSnapshot readSnapshot(Path file) throws IOException {
+        ByteBuffer buffer = load(file, KIND_SNAPSHOT);
+        boolean isVersion2 = buffer.getShort(4) >= 2;
+        int recordSize = isVersion2 ? SNAPSHOT_RECORD_SIZE : SNAPSHOT_RECORD_SIZE_V1;
+        int count = buffer.getInt(8);
+        int stringTable = buffer.getInt(24);
+        checkBounds(buffer, count, recordSize, stringTable);
+
+        EnumMap<NodeInfo.HardwareType, List<String>> values = new EnumMap<>(NodeInfo.HardwareType.class);
+        EnumMap<NodeInfo.HardwareType, List<String>> identities = new EnumMap<>(NodeInfo.HardwareType.class);
+        EnumMap<NodeInfo.HardwareType, Integer> typeFlags = new EnumMap<>(NodeInfo.HardwareType.class);
+        for (int i = 0; i < count; i++) {
+            int record = HEADER_SIZE + i * recordSize;
+            NodeInfo.HardwareType type = typeFromOrdinal(buffer.get(record) & 0xFF);
+            if (type == null) {
+                continue;
+            }
+            if (isVersion2 && buffer.getInt(record + 4) == TYPE_RECORD_INDEX) {
+                typeFlags.put(type, buffer.get(record + 1) & 0xFF);
+                continue;
+            }
+            // Records are written in index order, so each value goes at the end of its list
+            values.computeIfAbsent(type, t -> new ArrayList<>())
+                    .add(readString(buffer, stringTable, buffer.getInt(record + 8)));
+            String identity = isVersion2 ? readString(buffer, stringTable, buffer.getInt(record + 12)) : null;
+            identities.computeIfAbsent(type, t -> new ArrayList<>()).add(identity == null ? "" : identity);
+        }
+
+        HardwareSnapshot.Builder builder = HardwareSnapshot.makeBuilder().setTimestamp(buffer.getLong(16));
+        values.forEach(builder::put);
+        identities.forEach((type, list) -> {
+            // Types without any known identity are matched by index, as if none were put
+            if (list.stream().anyMatch(identity -> !identity.isEmpty())) {
+                builder.putIdentities(type, list);
+            }
+        });
+        typeFlags.forEach((type, flags) -> {
+            if ((flags & FLAG_UNAVAILABLE) != 0) {
+                builder.markUnavailable(type);
+                return;
+            }
+            // A type that was collected without finding anything
+            if (!values.containsKey(type)) {
+                builder.put(type, List.of());
+            }
+            if ((flags & FLAG_STALE) != 0) {
+                builder.markStale(type);
+            }
+        });
+        return builder.build();
+    }
+
+    /* ======= *
+     * Helpers *
+     * ======= */
+
+    private static void writeFile(OutputStream out, short kind, int count, int leftCount, long timestamp,
+                                  ByteBuffer records, StringTable strings) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.write(MAGIC);
+        data.writeShort(VERSION);
+        data.writeShort(kind);
+        data.writeInt(count);
+        data.writeInt(leftCount);
+        data.writeLong(timestamp);
+        data.writeInt(HEADER_SIZE + records.capacity());
+        data.writeInt(0);
+        data.write(records.array());
+        strings.writeTo(data);
+        data.flush();
+    }
+
+    // Reads a file onto the heap and validates its header
+    private static ByteBuffer load(Path file, short kind) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                throw new IOException("File is too small to be a binary save file: " + file);
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File is too large to be a binary save file: " + file);
+            }
+            buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                // The file shrank while being read
+                if (channel.read(buffer) < 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+        }
+        if (buffer.limit() < HEADER_SIZE) {
+            throw new IOException("File is too small to be a binary save file: " + file);
+        }
+
+        byte[] magic = new byte[MAGIC.length];
+        buffer.get(0, magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a binary save file: " + file);
+        }
+        if (buffer.getShort(4) < MIN_VERSION || buffer.getShort(4) > VERSION) {
+            throw new IOException("Unsupported binary save file version " + buffer.getShort(4) + ": " + file);
+        }
+        if (buffer.getShort(6) != kind) {
+            throw new IOException("Binary save file has the wrong kind of data: " + file);
+        }
+        return buffer;
+    }
+
+    // Makes sure the records and string table fit within the file
+    private static void checkBounds(ByteBuffer buffer, int count, int recordSize, int stringTable) throws IOException {
+        if (count < 0 || stringTable < HEADER_SIZE
+                || (long) HEADER_SIZE + (long) count * recordSize > stringTable
+                || stringTable > buffer.limit()) {
+            throw new IOException("Binary save file is corrupt");
+        }
+    }
+
+    // Decodes a string from the string table
+    private static String readString(ByteBuffer buffer, int stringTable, int ref) throws IOException {
+        if (ref == NULL_REF) {
+            return null;
+        }
+        // Checked as longs, so a corrupt reference or length can't overflow past the checks
+        long position = (long) stringTable + ref;
+        if (ref < 0 || position + 4 > buffer.limit()) {
+            throw new IOException("Binary save file has an invalid string reference");
+        }
+        int length = buffer.getInt((int) position);
+        if (length < 0 || position + 4 + length > buffer.limit()) {
+            throw new IOException("Binary save file has an invalid string length");
+        }
+        byte[] bytes = new byte[length];
+        buffer.get((int) position + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static NodeInfo.HardwareType typeFromOrdinal(int ordinal) {
+        return ordinal < TYPES.length ? TYPES[ordinal] : null;
+    }
+
+    // Converts "#rrggbb" to an int, or -1 if it isn't in that format
+    private static int parseColor(String color) {
+        if (color == null || color.length() != 7 || color.charAt(0) != '#') {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(color.substring(1), 16);
+        }
+        catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Collects the strings of a file, storing each distinct
+     * string once. Each string is a length followed by UTF-8 bytes.
+     */
+    private static class StringTable {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream data = new DataOutputStream(bytes);
+        private final Map<String, Integer> refs = new HashMap<>();
+
+        /**
+         * @param s The string to add, may be null
+         * @return The string's reference
+         */
+        int add(String s) throws IOException {
+            if (s == null) {
+                return NULL_REF;
+            }
+            Integer ref = refs.get(s);
+            if (ref == null) {
+                ref = bytes.size();
+                byte[] encoded = s.getBytes(StandardCharsets.UTF_8);
+                data.writeInt(encoded.length);
+                data.write(encoded);
+                refs.put(s, ref);
+            }
+            return ref;
+        }
+
+        void writeTo(OutputStream out) throws IOException {
+            bytes.writeTo(out);
+        }
+
+    }
+
+}
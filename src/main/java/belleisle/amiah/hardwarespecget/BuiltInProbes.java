@@ -0,0 +1,187 @@
+package belleisle.amiah.hardwarespecget;
+
+import java.util.List;
+
+/**
+ * The probes shipped with the application. Each one calls the matching
+ * method of {@link HardwareCollector}.
+ * <p>
+ * These are registered as {@link HardwareProbe} providers in
+ * {@code module-info.java} and {@code META-INF/services}.
+ * </p>
+ */
+public abstract class BuiltInProbes {
+
+    public static class Cpu implements HardwareProbe {
+        @Override
+        public NodeInfo.HardwareType getType() {
+            return NodeInfo.HardwareType.CPU;
+        }
+
+        @Override
+        public List<String> probe() {
+            return List.of(HardwareCollector.getCPU());
+        }
+    }
+
+    public static class CpuCore implements HardwareProbe {
+        @Override
+        public NodeInfo.HardwareType getType() {
+            return NodeInfo.HardwareType.CPU_CORE;
+        }
+
+        @Override
+        public List<String> probe() {
+            return HardwareCollector.getCpuCores();
+        }
+    }
+
+    public static class Gpu implements HardwareProbe {
+        @Override
+        public NodeInfo.HardwareType getType() {
+            return NodeInfo.HardwareType.GPU;
+        }
+
+        @Override
+        public List<String> probe() {
+            return HardwareCollector.getGPUs();
+        }
+    }
+
+    public static class Ram implements HardwareProbe {
+        @Override
+        public NodeInfo.HardwareType getType() {
+            return NodeInfo.HardwareType.RAM;
+        }
+
+        @Override
+        public List<String> probe() {
+            return List.of(HardwareCollector.getRAM());
+        }
+
+        // The content includes the available memory, so the total identifies the RAM instead
+        @Override
+        public Result probeWithIdentities() {
+            return new Result(probe(), List.of(Long.toString(HardwareCollector.getTotalMemory())));
+        }
+    }
+
+    public static class Disk implements HardwareProbe {
+        @Override
+        public NodeInfo.HardwareType getType() {
+            return NodeInfo.HardwareType.DISK;
+        }
+
+        @Override
+        public List<String> probe() {
+            return HardwareCollector.getDisk();
+        }
+
+        @Override
+        public Result probeWithIdentities() {
+            return HardwareCollector.getDisksWithSerials();
+        }
+    }
+
+    public static class Network implements HardwareProbe {
+        @Override
+        public NodeInfo.HardwareType getType() {
+            return NodeInfo.HardwareType.NETWORK;
+        }
+
+        @Override
+        public List<String> probe() {
+            return HardwareCollector.getNetwork();
+        }
+
+        // Interfaces are matched by MAC address, since their order can change
+        @Override
+        public Result probeWithIdentities() {
+            return HardwareCollector.getNetworkWithMacs();
+        }
+    }
+
+    public static class Motherboard implements HardwareProbe {
+        @Override
+        public NodeInfo.HardwareType getType() {
+            return NodeInfo.HardwareType.MOTHERBOARD;
+        }
+
+        @Override
+        public List<String> probe() {
+            return List.of(HardwareCollector.getMotherboard());
+        }
+
+        @Override
+        public Result probeWithIdentities() {
+            return new Result(probe(), List.of(HardwareCollector.getMotherboardSerial()));
+        }
+    }
+
+    public static class Sensors implements HardwareProbe {
+        @Override
+        public NodeInfo.HardwareType getType() {
+            return NodeInfo.HardwareType.SENSORS;
+        }
+
+        @Override
+        public List<String> probe() {
+            return HardwareCollector.getSensors();
+        }
+    }
+
+    public static class Processes implements HardwareProbe {
+        @Override
+        public NodeInfo.HardwareType getType() {
+            return NodeInfo.HardwareType.PROCESSES;
+        }
+
+        @Override
+        public List<String> probe() {
+            return HardwareCollector.getProcesses();
+        }
+    }
+
+    public static class Os implements HardwareProbe {
+        @Override
+        public NodeInfo.HardwareType getType() {
+            return NodeInfo.HardwareType.OS;
+        }
+
+        @Override
+        public List<String> probe() {
+            return List.of(HardwareCollector.getOS());
+        }
+    }
+
+    public static class Kernel implements HardwareProbe {
+        @Override
+        public NodeInfo.HardwareType getType() {
+            return NodeInfo.HardwareType.KERNEL;
+        }
+
+        @Override
+        public List<String> probe() {
+            return List.of(HardwareCollector.getKernel());
+        }
+
+        // Kernel is redundant on windows, so it isn't collected there
+        @Override
+        public boolean isSupported() {
+            return !HardwareCollector.isWindows();
+        }
+    }
+
+    public static class Username implements HardwareProbe {
+        @Override
+        public NodeInfo.HardwareType getType() {
+            return NodeInfo.HardwareType.USERNAME;
+        }
+
+        @Override
+        public List<String> probe() {
+            return List.of(HardwareCollector.getUsername());
+        }
+    }
+
+}
@@ -0,0 +1,180 @@
+package belleisle.amiah.hardwarespecget;
+
+import oshi.hardware.CentralProcessor;
+
+/**
+ * Measures the load and current frequency of each logical processor.
+ * <p>
+ * The load of a core is the share of its ticks since the previous sample that
+ * weren't idle. The previous ticks and the results are held in arrays allocated
+ * once, and the deltas are computed in place, so a sample creates nothing per
+ * core. Samples are taken by the {@link LiveSampler}, on its thread.
+ * </p>
+ * <p>
+ * OSHI only refreshes the ticks every few hundred milliseconds, so a sample
+ * taken right after the previous one sees no new ticks. The load is unknown
+ * until a sample has measured new ticks, and {@link #ensureMeasured(long)}
+ * measures over a real interval for callers that can't wait for the sampler.
+ * </p>
+ */
+public class CpuTelemetry {
+
+    private static final int IDLE = CentralProcessor.TickType.IDLE.getIndex();
+    private static final int IOWAIT = CentralProcessor.TickType.IOWAIT.getIndex();
+    // Milliseconds between the two readings taken when the load is needed right away.
+    // Longer than OSHI caches the ticks for.
+    private static final long FIRST_SAMPLE_DELAY = 500;
+
+    private final CentralProcessor processor;
+    private final int coreCount;
+    // Ticks of each core at the previous sample, overwritten by each sample
+    private final long[][] previousTicks;
+    // Results of the latest sample, indexed by logical processor
+    private final double[] load;
+    private final long[] frequency;
+    // Number of samples taken. Written after the results, so readers see a whole sample.
+    private volatile long sampleCount = 0;
+    // Time of the latest sample that measured new ticks, or 0 if none has
+    private volatile long measuredTime = 0;
+
+    /**
+     * Reads the current ticks, so the first sample measures from now.
+     *
+     * @param processor The processor to measure
+     */
+    CpuTelemetry(CentralProcessor processor) {
+        this.processor = processor;
+        long[][] ticks = processor.getProcessorCpuLoadTicks();
+        coreCount = ticks.length;
+        previousTicks = new long[coreCount][CentralProcessor.TickType.values().length];
+        load = new double[coreCount];
+        frequency = new long[coreCount];
+        copyTicks(ticks);
+    }
+
+    /**
+     * Measures every core since the previous sample.
+     */
+    synchronized void sample() {
+        long[][] ticks = processor.getProcessorCpuLoadTicks();
+        long[] freq = processor.getCurrentFreq();
+        int cores = Math.min(coreCount, ticks.length);
+        boolean measured = false;
+        for (int core = 0; core < cores; core++) {
+            long[] current = ticks[core];
+            long[] previous = previousTicks[core];
+            long total = 0;
+            long idle = 0;
+            for (int t = 0; t < previous.length && t < current.length; t++) {
+                long delta = current[t] - previous[t];
+                total += delta;
+                if (t == IDLE || t == IOWAIT) {
+                    idle += delta;
+                }
+            }
+            // OSHI caches ticks briefly, so a quick resample may see no new ticks
+            if (total > 0) {
+                load[core] = (double) (total - idle) / total;
+                measured = true;
+            }
+            frequency[core] = core < freq.length ? freq[core] : -1;
+        }
+        copyTicks(ticks);
+        if (measured) {
+            measuredTime = System.currentTimeMillis();
+        }
+        sampleCount++;
+    }
+
+    /**
+     * Makes sure the load has been measured recently. If it hasn't, the ticks
+     * are read again and the load is measured over a short interval from them,
+     * rather than since a sample taken long ago.
+     *
+     * @param maxAge The age in milliseconds of the latest measurement that is still recent
+     * @throws InterruptedException If interrupted while measuring
+     */
+    void ensureMeasured(long maxAge) throws InterruptedException {
+        synchronized (this) {
+            if (isMeasuredWithin(maxAge)) {
+                return;
+            }
+            copyTicks(processor.getProcessorCpuLoadTicks());
+        }
+        Thread.sleep(FIRST_SAMPLE_DELAY);
+        synchronized (this) {
+            if (!isMeasuredWithin(maxAge)) {
+                sample();
+            }
+        }
+    }
+
+    private boolean isMeasuredWithin(long maxAge) {
+        long measured = measuredTime;
+        return measured > 0 && System.currentTimeMillis() - measured <= maxAge;
+    }
+
+    // Copies into the existing arrays rather than keeping OSHI's
+    private void copyTicks(long[][] ticks) {
+        for (int core = 0; core < coreCount && core < ticks.length; core++) {
+            System.arraycopy(ticks[core], 0, previousTicks[core], 0,
+                    Math.min(ticks[core].length, previousTicks[core].length));
+        }
+    }
+
+    /**
+     * @return The number of logical processors
+     */
+    public int getCoreCount() {
+        return coreCount;
+    }
+
+    /**
+     * @return The number of samples taken
+     */
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * @return true if a sample has measured the load, false if it is still unknown
+     */
+    public boolean isMeasured() {
+        return measuredTime > 0;
+    }
+
+    /**
+     * @param core The index of the logical processor
+     * @return The load of the core at the latest sample, between 0 and 1, or 0 if it isn't measured yet
+     */
+    public double getLoad(int core) {
+        return load[core];
+    }
+
+    /**
+     * @param core The index of the logical processor
+     * @return The frequency of the core at the latest sample in Hz, or a value
+     *         of 0 or less if the operating system doesn't report it
+     */
+    public long getFrequency(int core) {
+        return frequency[core];
+    }
+
+    /**
+     * Formats the latest reading of a core, such as "12% load at 3.40 GHz".
+     *
+     * @param core The index of the logical processor
+     * @return The formatted reading, or null if the core doesn't exist or the load isn't measured yet
+     */
+    public String format(int core) {
+        if (core < 0 || core >= coreCount || !isMeasured()) {
+            return null;
+        }
+        String formatted = String.format("%.0f%% load", load[core] * 100);
+        if (frequency[core] > 0) {
+            formatted += String.format(" at %.2f GHz", frequency[core] / 1e9);
+        }
+        return formatted;
+    }
+
+}
@@ -0,0 +1,222 @@
+package belleisle.amiah.hardwarespecget;
+
+import oshi.hardware.HWDiskStore;
+
+import java.util.List;
+
+/**
+ * Measures the throughput and IOPS of each disk.
+ * <p>
+ * The disks are enumerated by the disk probe and handed over with
+ * {@link #setDisks(List)}. Each sample then only calls
+ * {@link HWDiskStore#updateAttributes()} on the disks it already has, which
+ * reads one set of counters per disk rather than scanning every device. Rates
+ * are derived from the counter deltas between samples. Samples are taken by the
+ * {@link LiveSampler}, on its thread.
+ * </p>
+ */
+public class DiskTelemetry {
+
+    // Replaced as a whole when the disks are enumerated again
+    private volatile Disks disks;
+
+    /**
+     * @param stores The disks to measure, in the same order as the snapshot's disks
+     */
+    DiskTelemetry(List<HWDiskStore> stores) {
+        disks = new Disks(stores);
+    }
+
+    /**
+     * Replaces the disks being measured, after they were enumerated again.
+     * Rates restart from the next sample.
+     *
+     * @param stores The disks to measure, in the same order as the snapshot's disks
+     */
+    void setDisks(List<HWDiskStore> stores) {
+        disks = new Disks(stores);
+    }
+
+    /**
+     * Updates the counters of every disk and measures the rates since the
+     * previous sample. Must only be called from one thread at a time.
+     */
+    void sample() {
+        disks.sample();
+    }
+
+    /**
+     * @return The number of disks being measured
+     */
+    public int getDiskCount() {
+        return disks.stores.length;
+    }
+
+    /**
+     * @param disk The index of the disk
+     * @return The beautified name of the disk
+     */
+    public String getName(int disk) {
+        return disks.names[disk];
+    }
+
+    /**
+     * @param disk The index of the disk
+     * @return The size of the disk, in bytes
+     */
+    public long getSize(int disk) {
+        return disks.sizes[disk];
+    }
+
+    /**
+     * @param disk The index of the disk
+     * @return The bytes read per second at the latest sample
+     */
+    public double getReadBytesPerSecond(int disk) {
+        return disks.readBytesPerSecond[disk];
+    }
+
+    /**
+     * @param disk The index of the disk
+     * @return The bytes written per second at the latest sample
+     */
+    public double getWriteBytesPerSecond(int disk) {
+        return disks.writeBytesPerSecond[disk];
+    }
+
+    /**
+     * @param disk The index of the disk
+     * @return The reads per second at the latest sample
+     */
+    public double getReadIops(int disk) {
+        return disks.readIops[disk];
+    }
+
+    /**
+     * @param disk The index of the disk
+     * @return The writes per second at the latest sample
+     */
+    public double getWriteIops(int disk) {
+        return disks.writeIops[disk];
+    }
+
+    /**
+     * @return The bytes read from every disk since boot, as of the latest sample
+     */
+    public long getTotalReadBytes() {
+        return disks.totalReadBytes;
+    }
+
+    /**
+     * @return The bytes written to every disk since boot, as of the latest sample
+     */
+    public long getTotalWriteBytes() {
+        return disks.totalWriteBytes;
+    }
+
+    /**
+     * Formats the size and latest rates of a disk, such as
+     * "1.00 TB, read 12.0 MB/s (80 IOPS), write 0.5 MB/s (4 IOPS)".
+     *
+     * @param disk The index of the disk
+     * @return The formatted reading, or null if the disk doesn't exist
+     */
+    public String format(int disk) {
+        Disks current = disks;
+        if (disk < 0 || disk >= current.stores.length) {
+            return null;
+        }
+        return formatSize(current.sizes[disk])
+                + String.format(", read %.1f MB/s (%.0f IOPS), write %.1f MB/s (%.0f IOPS)",
+                        current.readBytesPerSecond[disk] / 1e6, current.readIops[disk],
+                        current.writeBytesPerSecond[disk] / 1e6, current.writeIops[disk]);
+    }
+
+    // Uses the same decimal units as the RAM
+    private static String formatSize(long bytes) {
+        if (bytes >= 1e12) {
+            return String.format("%.2f TB", bytes / 1e12);
+        }
+        return String.format("%.2f GB", bytes / 1e9);
+    }
+
+    /**
+     * One enumeration of the disks, with their counters at the previous
+     * sample and the rates measured from them.
+     */
+    private static class Disks {
+
+        private final HWDiskStore[] stores;
+        private final String[] names;
+        private final long[] sizes;
+        // Counters and their time at the previous sample
+        private final long[] reads;
+        private final long[] readBytes;
+        private final long[] writes;
+        private final long[] writeBytes;
+        private final long[] timestamps;
+        // Rates measured by the latest sample
+        private final double[] readBytesPerSecond;
+        private final double[] writeBytesPerSecond;
+        private final double[] readIops;
+        private final double[] writeIops;
+        private volatile long totalReadBytes = 0;
+        private volatile long totalWriteBytes = 0;
+
+        Disks(List<HWDiskStore> list) {
+            stores = list.toArray(new HWDiskStore[0]);
+            int count = stores.length;
+            names = new String[count];
+            sizes = new long[count];
+            reads = new long[count];
+            readBytes = new long[count];
+            writes = new long[count];
+            writeBytes = new long[count];
+            timestamps = new long[count];
+            readBytesPerSecond = new double[count];
+            writeBytesPerSecond = new double[count];
+            readIops = new double[count];
+            writeIops = new double[count];
+            for (int i = 0; i < count; i++) {
+                names[i] = HardwareCollector.beatifyName(stores[i].getModel());
+                sizes[i] = stores[i].getSize();
+                storeCounters(i);
+                totalReadBytes += readBytes[i];
+                totalWriteBytes += writeBytes[i];
+            }
+        }
+
+        void sample() {
+            long totalRead = 0;
+            long totalWritten = 0;
+            for (int i = 0; i < stores.length; i++) {
+                HWDiskStore store = stores[i];
+                store.updateAttributes();
+                long elapsed = store.getTimeStamp() - timestamps[i];
+                // The counters haven't been refreshed since the last sample, so keep the last rates
+                if (elapsed > 0) {
+                    double seconds = elapsed / 1000.0;
+                    readBytesPerSecond[i] = Math.max(0, store.getReadBytes() - readBytes[i]) / seconds;
+                    writeBytesPerSecond[i] = Math.max(0, store.getWriteBytes() - writeBytes[i]) / seconds;
+                    readIops[i] = Math.max(0, store.getReads() - reads[i]) / seconds;
+                    writeIops[i] = Math.max(0, store.getWrites() - writes[i]) / seconds;
+                    storeCounters(i);
+                }
+                totalRead += readBytes[i];
+                totalWritten += writeBytes[i];
+            }
+            totalReadBytes = totalRead;
+            totalWriteBytes = totalWritten;
+        }
+
+        private void storeCounters(int i) {
+            reads[i] = stores[i].getReads();
+            readBytes[i] = stores[i].getReadBytes();
+            writes[i] = stores[i].getWrites();
+            writeBytes[i] = stores[i].getWriteBytes();
+            timestamps[i] = stores[i].getTimeStamp();
+        }
+
+    }
+
+}
@@ -1,12 +1,12 @@
 package belleisle.amiah.hardwarespecget;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.JsonNodeType;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 import javafx.scene.Cursor;
-import javafx.scene.Node;
 import javafx.scene.control.Alert;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
@@ -18,13 +18,35 @@ import java.net.URI;
 import java.net.URL;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public abstract class FileUtil {
 
+    // Set to "binary" to save layouts and snapshots in the binary format. Either format can always be loaded.
+    public static final String SAVE_FORMAT_PROPERTY = "hardwarespecget.saveFormat";
+
+    // Shared by every save and load, since creating a mapper is expensive
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    // Maximum number of decoded images kept by getImage
+    private static final int IMAGE_CACHE_SIZE = 32;
+    // Decoded images by name and size, least recently used first
+    private static final LinkedHashMap<ImageKey, Image> IMAGE_CACHE = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ImageKey, Image> eldest) {
+            return size() > IMAGE_CACHE_SIZE;
+        }
+    };
+
     // Used to ensure that the user can only select supported image files
     private static final FileChooser.ExtensionFilter IMAGE_FILTER = new FileChooser.ExtensionFilter(
             "Image File (*.png, *.jpg, *jpeg, *.jpe, *.gif, *.bmp)",
@@ -56,22 +78,65 @@ public abstract class FileUtil {
 
     /**
      * Gets an image file and returns it as an {@link Image} object.
+     * The image is decoded at its full size.
      *
      * @param fileName Name of image file in the resource folder
      * @return An {@link Image} with the specified resource, or an empty image
      *         if it couldn't find the resource.
+     * @see #getImage(String, double, double)
      */
     public static Image getImage(String fileName) {
+        return getImage(fileName, 0, 0);
+    }
+
+    /**
+     * Gets an image file and returns it as an {@link Image} object, decoded
+     * to fit within the requested size.
+     * <p>
+     * Decoded images are cached by file name and size, so every caller
+     * asking for the same image gets the same {@link Image} instance.
+     * </p>
+     *
+     * @param fileName Name of image file in the resource folder
+     * @param width Width to fit the image within, or 0 to use the image's width
+     * @param height Height to fit the image within, or 0 to use the image's height
+     * @return An {@link Image} with the specified resource, or an empty image
+     *         if it couldn't find the resource.
+     */
+    public static Image getImage(String fileName, double width, double height) {
+        ImageKey key = new ImageKey(fileName, width, height);
+        synchronized (IMAGE_CACHE) {
+            Image cached = IMAGE_CACHE.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        Image image;
         // Get the resource to display
-        InputStream is = FileUtil.class.getResourceAsStream(fileName);
-        // If it can't be found return an image with nothing
-        if (is == null) {
+        try (InputStream is = FileUtil.class.getResourceAsStream(fileName)) {
+            // If it can't be found return an image with nothing
+            if (is == null) {
+                return new Image("");
+            }
+            // Else return the image with the resource
+            image = new Image(is, width, height, true, true);
+        }
+        catch (IOException e) {
+            // Only thrown when closing the stream, after the image has been decoded
             return new Image("");
         }
-        // Else return the image with the resource
-        return new Image(is);
+
+        synchronized (IMAGE_CACHE) {
+            // Another caller may have decoded the same image in the meantime
+            Image cached = IMAGE_CACHE.putIfAbsent(key, image);
+            return cached != null ? cached : image;
+        }
     }
 
+    // Used as the key of IMAGE_CACHE
+    private record ImageKey(String fileName, double width, double height) {}
+
     /**
      * Gets the specified save file. Will attempt to create the file if it
      * doesn't exist.
@@ -155,32 +220,9 @@ public abstract class FileUtil {
             return true; // Still consider save successful in this case
         }
 
-        // Getting the file
-        Optional<File> jsonFileOptional = getSaveFile("image.json");
-        File jsonFile;
-        if (jsonFileOptional.isPresent()) {
-            jsonFile = jsonFileOptional.get();
-        }
-        else {
-            AlertBuilder.makeBuilder(Alert.AlertType.ERROR)
-                    .setWindowTitle("Error")
-                    .setHeaderText("An Error has Occurred")
-                    .setMessage("Unable to find the save file.")
-                    .build()
-                    .showAndWait();
-            return false;
-        }
-
         // Create JSON and write it to file
-        try (BufferedWriter file = new BufferedWriter(new FileWriter(jsonFile))) {
-            ObjectMapper mapper = new ObjectMapper();
-            ObjectNode node = mapper.createObjectNode();
-            node.put("image", image.getUrl());
-
-            String json = mapper.writerWithDefaultPrettyPrinter().writeValueAsString(node);
-
-            file.write(json);
-            file.flush();
+        try {
+            writeImageFile(image.getUrl());
         }
         catch (IOException e) {
             AlertBuilder.makeBuilder(Alert.AlertType.ERROR)
@@ -221,8 +263,7 @@ public abstract class FileUtil {
         }
 
         try (BufferedReader file = new BufferedReader(new FileReader(jsonFile))) {
-            ObjectMapper mapper = new ObjectMapper();
-            JsonNode node = mapper.readTree(file);
+            JsonNode node = MAPPER.readTree(file);
             // If file doesn't contain field, don't try to load
             if (node.get("image") != null) {
                 imgView.setImage(new Image(node.get("image").asText()));
@@ -251,67 +292,9 @@ public abstract class FileUtil {
      * @return true if able to write to file, false otherwise
      */
     public static boolean saveNodeLists(NodeList left, NodeList right) {
-        // Get the file to write to
-        // Getting the file
-        Optional<File> jsonFileOptional = getSaveFile("entries.json");
-        File jsonFile;
-        if (jsonFileOptional.isPresent()) {
-            jsonFile = jsonFileOptional.get();
-        }
-        else {
-            AlertBuilder.makeBuilder(Alert.AlertType.ERROR)
-                    .setWindowTitle("Error")
-                    .setHeaderText("An Error has Occurred")
-                    .setMessage("Unable to find the save file.")
-                    .build()
-                    .showAndWait();
-            return false;
-        }
-
         // Create JSON and write it to file
-        try (BufferedWriter file = new BufferedWriter(new FileWriter(jsonFile))) {
-            // Create JSON objects and arrays
-            ObjectMapper mapper = new ObjectMapper();
-            ObjectNode rootNode = mapper.createObjectNode();
-            ArrayNode leftListNode = mapper.createArrayNode();
-            ArrayNode rightListNode = mapper.createArrayNode();
-            rootNode.set("left-list", leftListNode);
-            rootNode.set("right-list", rightListNode);
-            // Fill the arrays
-            for (Node n : left.getNodeList()) {
-                // Put data all nodes will have
-                ObjectNode tempNode = mapper.createObjectNode()
-                        .put("type", ((NodeInfo) n.getUserData()).getType().getValueAsString())
-                        .put("index",((NodeInfo) n.getUserData()).getIndex())
-                        .put("shown", ((NodeInfo) n.getUserData()).getIsShown())
-                        .put("background-color", ((NodeInfo) n.getUserData()).getMainColor());
-                // Save userdata if the node has userdata
-                if ( ((NodeInfo) n.getUserData()).getType() == NodeInfo.HardwareType.USERDATA) {
-                    tempNode.put("user-title", ((NodeInfo) n.getUserData()).getUserTitle());
-                    tempNode.put("user-content", ((NodeInfo) n.getUserData()).getUserContent());
-                }
-                // Add to the right list array
-                leftListNode.add(tempNode);
-            }
-            for (Node n : right.getNodeList()) {
-                // Put data all nodes will have
-                ObjectNode tempNode = mapper.createObjectNode()
-                        .put("type", ((NodeInfo) n.getUserData()).getType().getValueAsString())
-                        .put("index",((NodeInfo) n.getUserData()).getIndex())
-                        .put("shown", ((NodeInfo) n.getUserData()).getIsShown())
-                        .put("background-color", ((NodeInfo) n.getUserData()).getMainColor());
-                // Save userdata if the node has userdata
-                if ( ((NodeInfo) n.getUserData()).getType() == NodeInfo.HardwareType.USERDATA) {
-                    tempNode.put("user-title", ((NodeInfo) n.getUserData()).getUserTitle());
-                    tempNode.put("user-content", ((NodeInfo) n.getUserData()).getUserContent());
-                }
-                // Add to the right list array
-                rightListNode.add(tempNode);
-            }
-
-            String json = mapper.writerWithDefaultPrettyPrinter().writeValueAsString(rootNode);
-            file.write(json);
-            file.flush();
+        try {
+            writeEntriesFile(left.getNodeInfos(), right.getNodeInfos());
         }
         catch (IOException e) {
             AlertBuilder.makeBuilder(Alert.AlertType.ERROR)
@@ -352,52 +335,19 @@ public abstract class FileUtil {
             return false;
         }
 
-        try (BufferedReader file = new BufferedReader(new FileReader(jsonFile))) {
-            ObjectMapper mapper = new ObjectMapper();
-            JsonNode node  = mapper.readTree(file);
-
-            // Only load nodes if present and of proper type
-            if ((node.get("left-list") != null) && (node.get("right-list") != null)
-                    && (node.get("left-list").getNodeType() == JsonNodeType.ARRAY)
-                    && (node.get("right-list").getNodeType() == JsonNodeType.ARRAY)) {
-                // Load in the left list
-                for (JsonNode n : node.get("left-list")) {
-                    NodeInfo newNode = new NodeInfo(
-                            NodeInfo.HardwareType.stringToValue(n.get("type").asText()),
-                            n.get("index").asInt(),
-                            n.get("shown").asBoolean());
-                    // Set user data if the node contains user data
-                    if (newNode.getType() == NodeInfo.HardwareType.USERDATA) {
-                        newNode.setUserTitle(n.get("user-title").asText());
-                        newNode.setUserTitle(n.get("user-content").asText());
-                    }
-                    // Add the node to the list
-                    left.createElementInList(newNode);
-                }
-                // Load in the right list
-                for (JsonNode n : node.get("right-list")) {
-                    NodeInfo newNode = new NodeInfo(
-                            NodeInfo.HardwareType.stringToValue(n.get("type").asText()),
-                            n.get("index").asInt(),
-                            n.get("shown").asBoolean());
-                    // Set user data if the node contains user data
-                    if (newNode.getType() == NodeInfo.HardwareType.USERDATA) {
-                        newNode.setUserTitle(n.get("user-title").asText());
-                        newNode.setUserTitle(n.get("user-content").asText());
-                    }
-                    // Add the node to the list
-                    right.createElementInList(newNode);
-                }
-                // Jiggle the stage width so that the nodes' listeners get called
-                // to update their appearance
-                HardwareSpecApplication.rootStage.setWidth(HardwareSpecApplication.rootStage.getWidth() + 1);
-                HardwareSpecApplication.rootStage.setWidth(HardwareSpecApplication.rootStage.getWidth() - 1);
-            }
-            else {
+        try {
+            ArrayList<NodeInfo> leftInfos = new ArrayList<>();
+            ArrayList<NodeInfo> rightInfos = new ArrayList<>();
+            if (!readEntriesFile(jsonFile.toPath(), leftInfos, rightInfos)) {
                 // Failed to load nodes
                 return false;
             }
-
+            for (NodeInfo info : leftInfos) {
+                left.createElementInList(info);
+            }
+            for (NodeInfo info : rightInfos) {
+                right.createElementInList(info);
+            }
         }
         catch (IOException e) {
             AlertBuilder.makeBuilder(Alert.AlertType.ERROR)
@@ -411,4 +361,274 @@ public abstract class FileUtil {
         return true;
     }
 
+    /**
+     * Saves an image URL into "image.json". Unlike {@link #saveImage(Image)} this
+     * doesn't show any alerts, so it can be called off of the JavaFX application thread.
+     *
+     * @param url The URL of the image
+     * @throws IOException If unable to write to the file
+     */
+    public static void writeImageFile(String url) throws IOException {
+        writeJsonAtomically(getSaveFileForWriting("image.json"), generator -> {
+            generator.writeStartObject();
+            generator.writeStringField("image", url);
+            generator.writeEndObject();
+        });
+    }
+
+    /**
+     * Saves the left and right lists into "entries.json". Unlike {@link #saveNodeLists(NodeList, NodeList)}
+     * this doesn't show any alerts, so it can be called off of the JavaFX application thread.
+     *
+     * @param left The NodeInfos of the left list
+     * @param right The NodeInfos of the right list
+     * @throws IOException If unable to write to the file
+     */
+    public static void writeEntriesFile(List<NodeInfo> left, List<NodeInfo> right) throws IOException {
+        File file = getSaveFileForWriting("entries.json");
+        if (isSavingBinary()) {
+            writeAtomically(file, out -> BinaryFormat.writeLayout(out, left, right));
+        }
+        else {
+            writeJsonAtomically(file, generator -> writeNodeLists(generator, left, right));
+        }
+    }
+
+    /**
+     * Saves a snapshot into "snapshot.json", so that it can be displayed
+     * immediately on the next start. Doesn't show any alerts.
+     *
+     * @param snapshot The snapshot to save
+     * @throws IOException If unable to write to the file
+     */
+    public static void writeSnapshotFile(HardwareSnapshot snapshot) throws IOException {
+        File file = getSaveFileForWriting("snapshot.json");
+        if (isSavingBinary()) {
+            writeAtomically(file, out -> BinaryFormat.writeSnapshot(out, snapshot));
+        }
+        else {
+            writeJsonAtomically(file, snapshot::writeJson);
+        }
+    }
+
+    /**
+     * Loads the snapshot saved by {@link #writeSnapshotFile(HardwareSnapshot)}.
+     * Doesn't show any alerts, since a missing or unreadable snapshot only
+     * means the hardware has to be collected before anything is displayed.
+     *
+     * @return An {@link Optional Optional} containing the saved snapshot, or an empty
+     *         if there is no saved snapshot or it couldn't be read.
+     */
+    public static Optional<HardwareSnapshot> loadSnapshot() {
+        File file = new File(getSaveDataPath() + "snapshot.json");
+        if (!file.isFile()) {
+            return Optional.empty();
+        }
+        try {
+            if (BinaryFormat.isBinary(file.toPath())) {
+                return Optional.of(BinaryFormat.readSnapshot(file.toPath()));
+            }
+            try (JsonParser parser = MAPPER.getFactory().createParser(file)) {
+                return Optional.of(HardwareSnapshot.readJson(parser));
+            }
+        }
+        catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Gets the specified save file, creating the save data directory if needed.
+     * Does not create the file itself or show any alerts.
+     *
+     * @param fileName The name of the file to get
+     * @return The save file
+     * @throws IOException If the save data directory can't be created
+     */
+    private static File getSaveFileForWriting(String fileName) throws IOException {
+        File file = new File(getSaveDataPath() + fileName);
+        Files.createDirectories(file.toPath().toAbsolutePath().getParent());
+        return file;
+    }
+
+    /**
+     * Writes JSON to a file without ever leaving it partially written.
+     *
+     * @param target The file to replace
+     * @param content Writes the JSON to the generator
+     * @throws IOException If unable to write or move the file
+     * @see #writeAtomically(File, StreamContent)
+     */
+    private static void writeJsonAtomically(File target, JsonContent content) throws IOException {
+        writeAtomically(target, out -> {
+            // Don't let the generator close the stream, writeAtomically still needs it
+            JsonGenerator generator = MAPPER.getFactory().createGenerator(out, JsonEncoding.UTF8);
+            generator.useDefaultPrettyPrinter();
+            content.write(generator);
+            generator.flush();
+        });
+    }
+
+    /**
+     * Writes to a temporary file next to the target, then moves it over
+     * the target. The target is never left partially written, so a crash mid-save
+     * keeps the previous contents.
+     *
+     * @param target The file to replace
+     * @param content Writes the file's contents to the stream
+     * @throws IOException If unable to write or move the file
+     */
+    private static void writeAtomically(File target, StreamContent content) throws IOException {
+        Path targetPath = target.toPath();
+        Path tempPath = Files.createTempFile(targetPath.toAbsolutePath().getParent(), target.getName(), ".tmp");
+        try {
+            try (FileOutputStream out = new FileOutputStream(tempPath.toFile())) {
+                BufferedOutputStream buffered = new BufferedOutputStream(out);
+                content.write(buffered);
+                buffered.flush();
+                // Make sure the contents are on disk before they replace the target
+                out.getChannel().force(true);
+            }
+            try {
+                Files.move(tempPath, targetPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+            catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempPath, targetPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        finally {
+            // Only exists if something went wrong before the move
+            Files.deleteIfExists(tempPath);
+        }
+    }
+
+    // Used by writeJsonAtomically
+    @FunctionalInterface
+    private interface JsonContent {
+        void write(JsonGenerator generator) throws IOException;
+    }
+
+    // Used by writeAtomically
+    @FunctionalInterface
+    private interface StreamContent {
+        void write(OutputStream out) throws IOException;
+    }
+
+    /**
+     * @return true if layouts and snapshots should be saved in the binary format
+     * @see #SAVE_FORMAT_PROPERTY
+     */
+    private static boolean isSavingBinary() {
+        return "binary".equalsIgnoreCase(System.getProperty(SAVE_FORMAT_PROPERTY));
+    }
+
+    /**
+     * Reads the left and right lists from a save file, in either the
+     * JSON or binary format.
+     *
+     * @param file The file to read
+     * @param left The list to add the left list's NodeInfos to
+     * @param right The list to add the right list's NodeInfos to
+     * @return true if the file contained both lists, false otherwise
+     * @throws IOException If the file can't be read
+     */
+    static boolean readEntriesFile(Path file, List<NodeInfo> left, List<NodeInfo> right) throws IOException {
+        if (BinaryFormat.isBinary(file)) {
+            BinaryFormat.readLayout(file).toNodeInfos(left, right);
+            return true;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            return readNodeLists(reader, left, right);
+        }
+    }
+
+    /**
+     * Writes the left and right lists as the JSON object stored in "entries.json".
+     *
+     * @param generator The generator to write to
+     * @param left The NodeInfos of the left list
+     * @param right The NodeInfos of the right list
+     * @throws IOException If unable to write
+     */
+    static void writeNodeLists(JsonGenerator generator, List<NodeInfo> left, List<NodeInfo> right) throws IOException {
+        generator.writeStartObject();
+        writeNodeList(generator, "left-list", left);
+        writeNodeList(generator, "right-list", right);
+        generator.writeEndObject();
+    }
+
+    /**
+     * Writes a list of NodeInfos as a JSON array field.
+     *
+     * @param generator The generator to write to
+     * @param fieldName The name of the array field
+     * @param infos The NodeInfos to write
+     * @throws IOException If unable to write
+     */
+    private static void writeNodeList(JsonGenerator generator, String fieldName, List<NodeInfo> infos) throws IOException {
+        generator.writeArrayFieldStart(fieldName);
+        for (NodeInfo info : infos) {
+            // Put data all nodes will have
+            generator.writeStartObject();
+            generator.writeStringField("type", info.getType().getValueAsString());
+            generator.writeNumberField("index", info.getIndex());
+            generator.writeBooleanField("shown", info.getIsShown());
+            generator.writeStringField("background-color", info.getMainColor());
+            // Save userdata if the node has userdata
+            if (info.getType() == NodeInfo.HardwareType.USERDATA) {
+                generator.writeStringField("user-title", info.getUserTitle());
+                generator.writeStringField("user-content", info.getUserContent());
+            }
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+    }
+
+    /**
+     * Reads the JSON stored in "entries.json" and creates NodeInfo objects from it.
+     *
+     * @param reader The JSON to read
+     * @param left The list to add the left list's NodeInfos to
+     * @param right The list to add the right list's NodeInfos to
+     * @return true if the JSON contained both lists, false otherwise
+     * @throws IOException If the JSON can't be read
+     */
+    static boolean readNodeLists(Reader reader, List<NodeInfo> left, List<NodeInfo> right) throws IOException {
+        JsonNode node = MAPPER.readTree(reader);
+
+        // Only load nodes if present and of proper type
+        if ((node.get("left-list") == null) || (node.get("right-list") == null)
+                || (node.get("left-list").getNodeType() != JsonNodeType.ARRAY)
+                || (node.get("right-list").getNodeType() != JsonNodeType.ARRAY)) {
+            return false;
+        }
+        readNodeList(node.get("left-list"), left);
+        readNodeList(node.get("right-list"), right);
+        return true;
+    }
+
+    /**
+     * Creates a NodeInfo for each entry of a JSON array.
+     *
+     * @param array The JSON array to read
+     * @param infos The list to add the NodeInfos to
+     */
+    private static void readNodeList(JsonNode array, List<NodeInfo> infos) {
+        for (JsonNode n : array) {
+            NodeInfo newNode = new NodeInfo(
+                    NodeInfo.HardwareType.stringToValue(n.get("type").asText()),
+                    n.get("index").asInt(),
+                    n.get("shown").asBoolean());
+            if (n.get("background-color") != null) {
+                newNode.setMainColor(n.get("background-color").asText());
+            }
+            // Set user data if the node contains user data
+            if (newNode.getType() == NodeInfo.HardwareType.USERDATA) {
+                newNode.setUserTitle(n.get("user-title").asText());
+                newNode.setUserContent(n.get("user-content").asText());
+            }
+            infos.add(newNode);
+        }
+    }
+
 }
@@ -0,0 +1,182 @@
+package belleisle.amiah.hardwarespecget;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Builds a {@link FleetIndex} from snapshots exported by many hosts.
+ * <p>
+ * The input is either a directory of snapshot files, in the JSON or binary
+ * format, or a JSON lines file with one snapshot per line. Snapshots are read
+ * in chunks and indexed in parallel on a fork-join pool. Only a bounded number
+ * of chunks are in flight at once, and each snapshot is discarded as soon as it
+ * has been counted, so memory use doesn't grow with the number of files.
+ * </p>
+ */
+public abstract class FleetAggregator {
+
+    // Number of files or lines indexed by a single task
+    private static final int CHUNK_SIZE = 256;
+
+    // Shared between tasks, since JsonFactory is thread safe
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /**
+     * Indexes every snapshot in a directory or JSON lines file, using
+     * every available processor.
+     *
+     * @param source A directory of snapshot files, or a JSON lines file
+     * @return The index of every snapshot that could be read
+     * @throws IOException If the source can't be read
+     */
+    public static FleetIndex aggregate(Path source) throws IOException {
+        return aggregate(source, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Indexes every snapshot in a directory or JSON lines file. Snapshots that
+     * can't be read are counted by {@link FleetIndex#getFailedCount()}.
+     *
+     * @param source A directory of snapshot files, or a JSON lines file
+     * @param parallelism The number of threads to index with
+     * @return The index of every snapshot that could be read
+     * @throws IOException If the source can't be read
+     */
+    public static FleetIndex aggregate(Path source, int parallelism) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            ChunkQueue queue = new ChunkQueue(pool, parallelism * 2);
+            if (Files.isDirectory(source)) {
+                aggregateDirectory(source, queue);
+            }
+            else {
+                aggregateLines(source, queue);
+            }
+            return queue.finish();
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Indexes every regular file in a directory. The directory is streamed,
+     * so its listing is never held in memory.
+     */
+    private static void aggregateDirectory(Path directory, ChunkQueue queue) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, Files::isRegularFile)) {
+            List<Path> chunk = new ArrayList<>(CHUNK_SIZE);
+            for (Path file : files) {
+                chunk.add(file);
+                if (chunk.size() == CHUNK_SIZE) {
+                    queue.submit(indexFiles(chunk));
+                    chunk = new ArrayList<>(CHUNK_SIZE);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                queue.submit(indexFiles(chunk));
+            }
+        }
+    }
+
+    /**
+     * Indexes every non-blank line of a JSON lines file.
+     */
+    private static void aggregateLines(Path file, ChunkQueue queue) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            List<String> chunk = new ArrayList<>(CHUNK_SIZE);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                chunk.add(line);
+                if (chunk.size() == CHUNK_SIZE) {
+                    queue.submit(indexLines(chunk));
+                    chunk = new ArrayList<>(CHUNK_SIZE);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                queue.submit(indexLines(chunk));
+            }
+        }
+    }
+
+    // Creates a task that indexes a chunk of snapshot files
+    private static ForkJoinTask<FleetIndex> indexFiles(List<Path> files) {
+        return ForkJoinTask.adapt(() -> {
+            FleetIndex index = new FleetIndex();
+            for (Path file : files) {
+                try {
+                    index.add(HardwareSnapshot.read(file));
+                }
+                // Any failure only affects this file, rather than the whole run
+                catch (IOException | RuntimeException e) {
+                    index.addFailure();
+                }
+            }
+            return index;
+        });
+    }
+
+    // Creates a task that indexes a chunk of JSON lines
+    private static ForkJoinTask<FleetIndex> indexLines(List<String> lines) {
+        return ForkJoinTask.adapt(() -> {
+            FleetIndex index = new FleetIndex();
+            for (String line : lines) {
+                try (JsonParser parser = JSON_FACTORY.createParser(line)) {
+                    index.add(HardwareSnapshot.readJson(parser));
+                }
+                catch (IOException | RuntimeException e) {
+                    index.addFailure();
+                }
+            }
+            return index;
+        });
+    }
+
+    /**
+     * Limits the number of chunks waiting to be indexed. Once the limit is
+     * reached, the oldest chunk is waited for and merged before another is
+     * submitted, so the reader can't get far ahead of the pool.
+     */
+    private static class ChunkQueue {
+
+        private final ForkJoinPool pool;
+        private final int maxInFlight;
+        private final ArrayDeque<ForkJoinTask<FleetIndex>> inFlight = new ArrayDeque<>();
+        private final FleetIndex result = new FleetIndex();
+
+        ChunkQueue(ForkJoinPool pool, int maxInFlight) {
+            this.pool = pool;
+            this.maxInFlight = maxInFlight;
+        }
+
+        void submit(ForkJoinTask<FleetIndex> task) {
+            if (inFlight.size() >= maxInFlight) {
+                result.merge(inFlight.removeFirst().join());
+            }
+            inFlight.addLast(pool.submit(task));
+        }
+
+        FleetIndex finish() {
+            while (!inFlight.isEmpty()) {
+                result.merge(inFlight.removeFirst().join());
+            }
+            return result;
+        }
+
+    }
+
+}
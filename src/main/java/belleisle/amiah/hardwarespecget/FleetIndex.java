@@ -0,0 +1,293 @@
+package belleisle.amiah.hardwarespecget;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Counts how many hosts have each piece of hardware, across many snapshots.
+ * <p>
+ * Only hardware that identifies a model is indexed, so the size of the index
+ * grows with the number of distinct models rather than the number of hosts.
+ * RAM is summed per operating system instead, since its content changes on every
+ * refresh. Names are normalized before being counted, so the same model reported
+ * with different trademark symbols, spacing, or case is counted once.
+ * </p>
+ *
+ * @see FleetAggregator
+ */
+public class FleetIndex {
+
+    // Types whose content names a model, and so repeats across hosts
+    private static final Set<NodeInfo.HardwareType> INDEXED_TYPES = EnumSet.of(
+            NodeInfo.HardwareType.CPU,
+            NodeInfo.HardwareType.GPU,
+            NodeInfo.HardwareType.DISK,
+            NodeInfo.HardwareType.MOTHERBOARD,
+            NodeInfo.HardwareType.OS,
+            NodeInfo.HardwareType.KERNEL);
+
+    private final EnumMap<NodeInfo.HardwareType, Map<String, NameCount>> names = new EnumMap<>(NodeInfo.HardwareType.class);
+    private final Map<String, RamTotal> ramByOs = new HashMap<>();
+    private long hostCount = 0;
+    private long failedCount = 0;
+
+    /**
+     * @return The number of snapshots that were indexed
+     */
+    public long getHostCount() {
+        return hostCount;
+    }
+
+    /**
+     * @return The number of snapshots that couldn't be read
+     */
+    public long getFailedCount() {
+        return failedCount;
+    }
+
+    /**
+     * Gets how many hosts have a piece of hardware. A host with two of
+     * the same GPU is only counted once.
+     *
+     * @param type The type of hardware
+     * @param name The name of the hardware. It is normalized before being looked up.
+     * @return The number of hosts with the hardware
+     */
+    public long getHostCount(NodeInfo.HardwareType type, String name) {
+        Map<String, NameCount> counts = names.get(type);
+        if (counts == null) {
+            return 0;
+        }
+        NameCount count = counts.get(toKey(name));
+        return count == null ? 0 : count.hosts;
+    }
+
+    /**
+     * Gets the number of hosts with each distinct name of a type, most common first.
+     *
+     * @param type The type of hardware
+     * @return A map of each name to its host count, in descending order of count
+     */
+    public Map<String, Long> getHostCounts(NodeInfo.HardwareType type) {
+        Map<String, NameCount> counts = names.getOrDefault(type, Map.of());
+        List<NameCount> sorted = new ArrayList<>(counts.values());
+        sorted.sort(Comparator.comparingLong((NameCount count) -> count.hosts).reversed()
+                .thenComparing(count -> count.name));
+
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (NameCount count : sorted) {
+            result.put(count.name, count.hosts);
+        }
+        return result;
+    }
+
+    /**
+     * @param osFamily The operating system, as reported in a snapshot
+     * @return The total RAM of every host running the operating system, in GB
+     */
+    public double getTotalRam(String osFamily) {
+        RamTotal total = ramByOs.get(toKey(osFamily));
+        return total == null ? 0 : total.gigabytes;
+    }
+
+    /**
+     * @return A map of each operating system to the total RAM of its hosts, in GB
+     */
+    public Map<String, Double> getTotalRamByOs() {
+        Map<String, Double> result = new TreeMap<>();
+        for (RamTotal total : ramByOs.values()) {
+            result.put(total.osFamily, total.gigabytes);
+        }
+        return result;
+    }
+
+    /**
+     * Writes the index as a JSON object.
+     *
+     * @param generator The generator to write to
+     * @throws IOException If the generator is unable to write
+     */
+    public void writeJson(JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("hosts", hostCount);
+        generator.writeNumberField("failed", failedCount);
+
+        generator.writeObjectFieldStart("hardware");
+        for (NodeInfo.HardwareType type : names.keySet()) {
+            generator.writeObjectFieldStart(type.getValueAsString());
+            for (Map.Entry<String, Long> entry : getHostCounts(type).entrySet()) {
+                generator.writeNumberField(entry.getKey(), entry.getValue());
+            }
+            generator.writeEndObject();
+        }
+        generator.writeEndObject();
+
+        generator.writeObjectFieldStart("ramByOs");
+        for (Map.Entry<String, Double> entry : getTotalRamByOs().entrySet()) {
+            generator.writeNumberField(entry.getKey(), entry.getValue());
+        }
+        generator.writeEndObject();
+        generator.writeEndObject();
+    }
+
+    /* ======== *
+     * Indexing *
+     * ======== */
+
+    /**
+     * Adds a host's snapshot to the index. Not thread safe, each thread
+     * should index into its own instance and {@link #merge(FleetIndex)} them.
+     *
+     * @param snapshot The host's snapshot
+     */
+    void add(HardwareSnapshot snapshot) {
+        hostCount++;
+
+        // Names already counted for this host
+        Set<String> seen = new HashSet<>();
+        for (NodeInfo.HardwareType type : snapshot.getCollectedTypes()) {
+            if (!INDEXED_TYPES.contains(type)) {
+                continue;
+            }
+            Map<String, NameCount> counts = names.computeIfAbsent(type, key -> new HashMap<>());
+            seen.clear();
+            for (String value : snapshot.getValues(type)) {
+                String key = toKey(value);
+                if (key.isEmpty() || !seen.add(key)) {
+                    continue;
+                }
+                counts.computeIfAbsent(key, k -> new NameCount(normalize(value))).hosts++;
+            }
+        }
+
+        String os = snapshot.getContent(NodeInfo.HardwareType.OS, 0);
+        double ram = getTotalRam(snapshot);
+        if (os != null && ram > 0) {
+            ramByOs.computeIfAbsent(toKey(os), key -> new RamTotal(normalize(os))).gigabytes += ram;
+        }
+    }
+
+    /**
+     * Records a snapshot that couldn't be read.
+     */
+    void addFailure() {
+        failedCount++;
+    }
+
+    /**
+     * Adds the counts from another index into this one.
+     *
+     * @param other The index to merge in. It should not be used afterwards.
+     */
+    void merge(FleetIndex other) {
+        hostCount += other.hostCount;
+        failedCount += other.failedCount;
+        for (Map.Entry<NodeInfo.HardwareType, Map<String, NameCount>> entry : other.names.entrySet()) {
+            Map<String, NameCount> counts = names.computeIfAbsent(entry.getKey(), key -> new HashMap<>());
+            for (Map.Entry<String, NameCount> count : entry.getValue().entrySet()) {
+                NameCount existing = counts.putIfAbsent(count.getKey(), count.getValue());
+                if (existing != null) {
+                    existing.hosts += count.getValue().hosts;
+                }
+            }
+        }
+        for (Map.Entry<String, RamTotal> entry : other.ramByOs.entrySet()) {
+            RamTotal existing = ramByOs.putIfAbsent(entry.getKey(), entry.getValue());
+            if (existing != null) {
+                existing.gigabytes += entry.getValue().gigabytes;
+            }
+        }
+    }
+
+    /**
+     * Gets the total RAM of a snapshot from its identity, which is the total in
+     * bytes. Snapshots exported before RAM had an identity are read from the content.
+     *
+     * @param snapshot The snapshot
+     * @return The total RAM in GB, or 0 if it can't be read
+     */
+    static double getTotalRam(HardwareSnapshot snapshot) {
+        String identity = snapshot.getIdentity(NodeInfo.HardwareType.RAM, 0);
+        if (identity != null) {
+            try {
+                return Long.parseLong(identity) / 1e9;
+            }
+            catch (NumberFormatException e) {
+                // Fall back to the content
+            }
+        }
+        return parseTotalRam(snapshot.getContent(NodeInfo.HardwareType.RAM, 0));
+    }
+
+    /**
+     * Gets the total from RAM content in the form "used / total GB". Older
+     * versions formatted RAM in the host's locale, so a decimal comma is also read.
+     *
+     * @param content The RAM content of a snapshot
+     * @return The total RAM in GB, or 0 if it can't be read
+     */
+    static double parseTotalRam(String content) {
+        if (content == null) {
+            return 0;
+        }
+        int slash = content.lastIndexOf('/');
+        int unit = content.lastIndexOf("GB");
+        if (slash == -1 || unit <= slash) {
+            return 0;
+        }
+        try {
+            return Double.parseDouble(content.substring(slash + 1, unit).trim().replace(',', '.'));
+        }
+        catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    // The name shown for a piece of hardware
+    private static String normalize(String name) {
+        return NameNormalizer.beautify(name).trim().replaceAll("\\s+", " ");
+    }
+
+    // The key a piece of hardware is counted under
+    private static String toKey(String name) {
+        return normalize(name).toLowerCase(Locale.ROOT);
+    }
+
+    // The first name seen for a key, and the number of hosts with it
+    private static class NameCount {
+
+        private final String name;
+        private long hosts = 0;
+
+        NameCount(String name) {
+            this.name = name;
+        }
+
+    }
+
+    // The first name seen for an operating system, and the total RAM of its hosts
+    private static class RamTotal {
+
+        private final String osFamily;
+        private double gigabytes = 0;
+
+        RamTotal(String osFamily) {
+            this.osFamily = osFamily;
+        }
+
+    }
+
+}
@@ -0,0 +1,35 @@
+package belleisle.amiah.hardwarespecget;
+
+/**
+ * A single difference in hardware between two snapshots.
+ *
+ * @param kind Whether the hardware was added, removed, or changed
+ * @param type The type of hardware
+ * @param index The index of the hardware in the newer snapshot, or in the
+ *              older snapshot if it was removed
+ * @param oldContent The content in the older snapshot, or {@code null} if it was added
+ * @param newContent The content in the newer snapshot, or {@code null} if it was removed
+ * @param identity The serial number or other identity of the hardware, or {@code null} if unknown
+ * @see HardwareDiff
+ */
+public record HardwareChange(Kind kind, NodeInfo.HardwareType type, int index,
+                             String oldContent, String newContent, String identity) {
+
+    // Enums
+    public enum Kind {
+        ADDED("Added"),
+        REMOVED("Removed"),
+        CHANGED("Changed");
+
+        private final String valueAsString;
+
+        private Kind(String valueAsString) {
+            this.valueAsString = valueAsString;
+        }
+
+        public String getValueAsString() {
+            return valueAsString;
+        }
+    }
+
+}
@@ -0,0 +1,72 @@
+package belleisle.amiah.hardwarespecget;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Compares every new snapshot with the one before it, and passes each
+ * {@link HardwareChange} to its listeners.
+ * <p>
+ * Listeners are called on the thread that replaced the snapshot, which is usually
+ * a probe thread, in the order the changes were found.
+ * </p>
+ *
+ * @see HardwareDiff
+ */
+public class HardwareChangeDetector {
+
+    private final List<Consumer<HardwareChange>> listeners = new CopyOnWriteArrayList<>();
+    private final Consumer<HardwareSnapshot> snapshotListener = this::onSnapshot;
+    // Guarded by this
+    private HardwareSnapshot previous = null;
+
+    /**
+     * Starts comparing snapshots. The current snapshot, if there is one, is
+     * the first one compared against.
+     */
+    public void start() {
+        synchronized (this) {
+            previous = HardwareCollector.peekSnapshot().orElse(null);
+        }
+        HardwareCollector.addSnapshotListener(snapshotListener);
+    }
+
+    /**
+     * Stops comparing snapshots.
+     */
+    public void stop() {
+        HardwareCollector.removeSnapshotListener(snapshotListener);
+    }
+
+    /**
+     * @param listener Called with every change found
+     */
+    public void addListener(Consumer<HardwareChange> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * @param listener A listener previously passed to {@link #addListener(Consumer)}
+     */
+    public void removeListener(Consumer<HardwareChange> listener) {
+        listeners.remove(listener);
+    }
+
+    private void onSnapshot(HardwareSnapshot snapshot) {
+        HardwareSnapshot older;
+        synchronized (this) {
+            older = previous;
+            previous = snapshot;
+        }
+        if (older == null) {
+            return;
+        }
+        for (HardwareChange change : HardwareDiff.diff(older, snapshot)) {
+            for (Consumer<HardwareChange> listener : listeners) {
+                listener.accept(change);
+            }
+        }
+    }
+
+}
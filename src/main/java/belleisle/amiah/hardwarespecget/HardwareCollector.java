@@ -4,14 +4,52 @@ import oshi.SystemInfo;
 import oshi.hardware.GraphicsCard;
 import oshi.hardware.HWDiskStore;
 import oshi.hardware.HardwareAbstractionLayer;
+import oshi.hardware.NetworkIF;
+import oshi.software.os.OperatingSystem;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 public abstract class HardwareCollector {
 
     private static SystemInfo sysInfo = new SystemInfo();
     private static HardwareAbstractionLayer hal = sysInfo.getHardware();
+    // The most recently taken snapshot, read by every NodeInfo
+    private static volatile HardwareSnapshot snapshot = null;
+    // Held while replacing the snapshot, so a collection merges with the snapshot it replaces
+    private static final Object SNAPSHOT_LOCK = new Object();
+
+    // Default number of milliseconds a probe may run for before it is reported as unavailable
+    public static final String PROBE_TIMEOUT_PROPERTY = "hardwarespecget.probe.timeoutMillis";
+    private static final long DEFAULT_PROBE_TIMEOUT = 10000;
+    // The probe used for each type, discovered with ServiceLoader
+    private static final Map<NodeInfo.HardwareType, HardwareProbe> PROBES = loadProbes();
+    // Each probe runs on its own thread, so a hanging probe only holds up its own type.
+    // Threads are daemons so a hanging probe never keeps the application from exiting.
+    private static final Map<NodeInfo.HardwareType, ExecutorService> PROBE_EXECUTORS = new EnumMap<>(NodeInfo.HardwareType.class);
+    // The most recent run of each probe. A probe isn't run again until its last run has finished.
+    private static final Map<NodeInfo.HardwareType, CompletableFuture<HardwareProbe.Result>> PROBE_RUNS = new EnumMap<>(NodeInfo.HardwareType.class);
+    // Skips probes that keep failing, one breaker per type
+    private static final Map<NodeInfo.HardwareType, ProbeCircuitBreaker> BREAKERS = new EnumMap<>(NodeInfo.HardwareType.class);
+    // The last freshly collected entries of each type, served while its probe is failing
+    private static final Map<NodeInfo.HardwareType, HardwareProbe.Result> LAST_GOOD = Collections.synchronizedMap(new EnumMap<>(NodeInfo.HardwareType.class));
+    // Called whenever the current snapshot is replaced
+    private static final List<Consumer<HardwareSnapshot>> SNAPSHOT_LISTENERS = new CopyOnWriteArrayList<>();
 
     /**
      * @return The CPU name and clock speed
@@ -20,6 +58,33 @@ public abstract class HardwareCollector {
         return beatifyName(hal.getProcessor().getProcessorIdentifier().getName());
     }
 
+    /**
+     * Gets the load and frequency of each logical processor, from the latest
+     * sample of the shared {@link LiveSampler}. If the load hasn't been measured
+     * recently, this waits while it is measured over a short interval.
+     *
+     * @return The reading of each logical processor, in order
+     */
+    public static ArrayList<String> getCpuCores() {
+        LiveSampler sampler = LiveSampler.getShared();
+        CpuTelemetry telemetry = sampler.getCpuTelemetry();
+        try {
+            // Samples up to two intervals old still count, so a late sample doesn't cause a wait
+            telemetry.ensureMeasured(sampler.getInterval() * 2);
+        }
+        catch (InterruptedException e) {
+            // A probe timeout only stops waiting for the result and doesn't interrupt this
+            // thread, so this only happens when a direct caller's thread is interrupted.
+            // Report what has been measured so far, and keep the interrupt for the caller.
+            Thread.currentThread().interrupt();
+        }
+        ArrayList<String> cores = new ArrayList<>(telemetry.getCoreCount());
+        for (int i = 0; i < telemetry.getCoreCount(); i++) {
+            cores.add(Objects.requireNonNullElse(telemetry.format(i), "Load unknown"));
+        }
+        return cores;
+    }
+
     /**
      * Gets all detected GPUs. This includes integrated graphics
      * and dedicated graphics cards.
@@ -40,10 +105,22 @@ public abstract class HardwareCollector {
      * @return RAM used out of total RAM
      */
     public static String getRAM() {
-        double usedMem = (double) hal.getMemory().getAvailable() / 1000000000;
-        double totalMem = (double) hal.getMemory().getTotal() / 1000000000;
+        return formatRam(hal.getMemory().getAvailable(), hal.getMemory().getTotal());
+    }
 
-        return String.format("%.2f", usedMem) + " / " + String.format("%.2f", totalMem) + " GB";
+    /**
+     * Formats RAM the same way as {@link #getRAM()}, from values read elsewhere.
+     * Always uses a decimal point, so exported snapshots read the same on every host.
+     *
+     * @param available The available memory, in bytes
+     * @param total The total memory, in bytes
+     * @return The formatted RAM
+     */
+    static String formatRam(long available, long total) {
+        double usedMem = (double) available / 1000000000;
+        double totalMem = (double) total / 1000000000;
+
+        return String.format(Locale.ROOT, "%.2f", usedMem) + " / " + String.format(Locale.ROOT, "%.2f", totalMem) + " GB";
     }
 
     /**
@@ -52,12 +129,151 @@ public abstract class HardwareCollector {
      * @return The name of the disk
      */
     public static ArrayList<String> getDisk() {
+        return new ArrayList<>(getDisksWithSerials().values());
+    }
+
+    /**
+     * Gets the name and serial number of each disk, enumerating the disks once.
+     *
+     * @return The name of each disk, and its serial number or an empty string if unknown
+     */
+    static HardwareProbe.Result getDisksWithSerials() {
+        List<HWDiskStore> stores = hal.getDiskStores();
+        // Polled by the sampler without enumerating them again
+        LiveSampler.updateSharedDisks(stores);
 
         ArrayList<String> disks = new ArrayList<>();
-        for (HWDiskStore ds : hal.getDiskStores()) {
+        ArrayList<String> serials = new ArrayList<>();
+        for (HWDiskStore ds : stores) {
             disks.add(beatifyName(ds.getModel()));
+            serials.add(knownOrEmpty(ds.getSerial()));
+        }
+        return new HardwareProbe.Result(disks, serials);
+    }
+
+    /**
+     * Gets the link speed, MAC address, and IP addresses of each network interface,
+     * enumerating the interfaces once. Loopback interfaces are skipped.
+     *
+     * @return The description of each interface, and its MAC address
+     */
+    static HardwareProbe.Result getNetworkWithMacs() {
+        List<NetworkIF> interfaces = hal.getNetworkIFs();
+        // Polled by the sampler without enumerating them again
+        LiveSampler.updateSharedNetworkIFs(interfaces);
+
+        ArrayList<String> descriptions = new ArrayList<>(interfaces.size());
+        ArrayList<String> macs = new ArrayList<>(interfaces.size());
+        for (NetworkIF networkIF : interfaces) {
+            StringBuilder sb = new StringBuilder(networkIF.getName());
+            String mac = knownOrEmpty(networkIF.getMacaddr());
+            if (networkIF.getSpeed() > 0) {
+                sb.append(", ").append(formatLinkSpeed(networkIF.getSpeed()));
+            }
+            if (!mac.isEmpty()) {
+                sb.append(", MAC ").append(mac);
+            }
+            for (String ip : networkIF.getIPv4addr()) {
+                sb.append(", ").append(ip);
+            }
+            for (String ip : networkIF.getIPv6addr()) {
+                sb.append(", ").append(ip);
+            }
+            descriptions.add(sb.toString());
+            macs.add(mac);
+        }
+        return new HardwareProbe.Result(descriptions, macs);
+    }
+
+    /**
+     * Gets the description of each network interface.
+     *
+     * @return The link speed, MAC address, and IP addresses of each interface
+     * @see #getNetworkWithMacs()
+     */
+    public static ArrayList<String> getNetwork() {
+        return new ArrayList<>(getNetworkWithMacs().values());
+    }
+
+    // Link speed in bits per second, as reported by OSHI
+    private static String formatLinkSpeed(long bitsPerSecond) {
+        if (bitsPerSecond >= 1000000000L) {
+            return String.format("%.0f Gbps", bitsPerSecond / 1e9);
+        }
+        return String.format("%.0f Mbps", bitsPerSecond / 1e6);
+    }
+
+    /**
+     * Reads the CPU temperature, fan speeds, and CPU voltage once.
+     *
+     * @return The formatted readings, or an empty list if the system reports no sensors
+     */
+    public static ArrayList<String> getSensors() {
+        ArrayList<String> readings = new ArrayList<>(1);
+        SensorPoller.Reading reading = SensorPoller.read(hal.getSensors());
+        if (reading.isAvailable()) {
+            readings.add(reading.format());
+        }
+        return readings;
+    }
+
+    /**
+     * Gets the processes using the most CPU and memory. If CPU use hasn't been
+     * measured yet, this waits while it is measured over a short interval.
+     *
+     * @return The top processes by CPU, then the top processes by memory
+     */
+    public static ArrayList<String> getProcesses() {
+        ProcessTracker tracker = ProcessTracker.getShared();
+        try {
+            tracker.ensureMeasured();
+        }
+        catch (InterruptedException e) {
+            // A probe timeout only stops waiting for the result and doesn't interrupt this
+            // thread, so this only happens when a direct caller's thread is interrupted.
+            // Report what has been measured so far, and keep the interrupt for the caller.
+            Thread.currentThread().interrupt();
+        }
+        ArrayList<String> lists = new ArrayList<>(2);
+        lists.add(Objects.requireNonNullElse(tracker.format(ProcessTracker.CPU_INDEX), "No CPU use"));
+        lists.add(Objects.requireNonNullElse(tracker.format(ProcessTracker.MEMORY_INDEX), "No processes"));
+        return lists;
+    }
+
+    /**
+     * @return The total physical memory in bytes
+     */
+    static long getTotalMemory() {
+        return hal.getMemory().getTotal();
+    }
+
+    /**
+     * @return The serial number of the motherboard, or an empty string if unknown
+     */
+    static String getMotherboardSerial() {
+        return knownOrEmpty(hal.getComputerSystem().getBaseboard().getSerialNumber());
+    }
+
+    /**
+     * @return The operating system, for classes that poll it directly such as {@link ProcessTracker}
+     */
+    static OperatingSystem getOperatingSystem() {
+        return sysInfo.getOperatingSystem();
+    }
+
+    /**
+     * @return The hardware, for classes that poll it directly such as {@link LiveSampler}
+     */
+    static HardwareAbstractionLayer getHardware() {
+        return hal;
+    }
+
+    // OSHI reports values it can't read as "unknown"
+    private static String knownOrEmpty(String value) {
+        if (value == null || value.isBlank() || value.trim().equalsIgnoreCase("unknown")) {
+            return "";
         }
-        return disks;
+        return value.trim();
     }
 
     /**
@@ -126,63 +342,450 @@ public abstract class HardwareCollector {
      * @return The name of the system's current user
      */
     public static String getUsername() {
-        return toTitle(System.getProperty("user.name")).trim();
+        return NameNormalizer.toTitle(System.getProperty("user.name")).trim();
+    }
+
+    /**
+     * Enumerates every hardware class once and stores the result as the
+     * current snapshot. Blocks until every probe has finished.
+     *
+     * @return The newly taken snapshot
+     * @see HardwareSnapshot
+     */
+    public static HardwareSnapshot takeSnapshot() {
+        return takeSnapshotAsync().join();
+    }
+
+    /**
+     * Enumerates only the requested hardware classes and stores the result
+     * as the current snapshot. Blocks until every probe has finished.
+     *
+     * @param types The types of hardware to collect. Types without a probe are ignored.
+     * @return The newly taken snapshot
+     * @see HardwareSnapshot
+     */
+    public static HardwareSnapshot takeSnapshot(Set<NodeInfo.HardwareType> types) {
+        return takeSnapshotAsync(types).join();
     }
 
     /**
-     * Creates NodeInfo objects for the CPU, GPUs, RAM, Disk, and Motherboard,
-     * and places them in a list.
+     * Enumerates every hardware class on a background thread, running the
+     * independent probes concurrently. Once every probe has finished or timed
+     * out the result is stored as the current snapshot.
+     *
+     * @return A future that completes with the newly taken snapshot
+     * @see HardwareSnapshot
+     */
+    public static CompletableFuture<HardwareSnapshot> takeSnapshotAsync() {
+        return takeSnapshotAsync(EnumSet.allOf(NodeInfo.HardwareType.class));
+    }
+
+    /**
+     * Enumerates the requested hardware classes on a background thread, running
+     * the independent probes concurrently. Probes for other types are not run.
+     * Once every probe has finished or timed out the result is stored as the
+     * current snapshot.
+     * <p>
+     * A probe that throws, or doesn't finish within its timeout, doesn't fail the
+     * whole snapshot. Its last good entries are used instead and marked as stale,
+     * or it is marked as unavailable if it has never succeeded. A probe that is still
+     * running from an earlier snapshot isn't started again, and a probe that keeps
+     * failing is skipped by its {@link ProbeCircuitBreaker} for a while.
+     * </p>
+     *
+     * @param types The types of hardware to collect. Types without a probe are ignored.
+     * @return A future that completes with the newly taken snapshot
+     * @see HardwareSnapshot
+     * @see #PROBE_TIMEOUT_PROPERTY
+     */
+    public static CompletableFuture<HardwareSnapshot> takeSnapshotAsync(Set<NodeInfo.HardwareType> types) {
+        return collectAsync(types, false);
+    }
+
+    /**
+     * Probes only the requested hardware classes, and carries every other type
+     * over from the current snapshot when the probes finish. This is used to refresh
+     * only the hardware that is being displayed. If there is no current snapshot,
+     * this is the same as {@link #takeSnapshotAsync(Set)}.
+     *
+     * @param types The types of hardware to probe again
+     * @return A future that completes with the new snapshot
+     */
+    public static CompletableFuture<HardwareSnapshot> refreshSnapshotAsync(Set<NodeInfo.HardwareType> types) {
+        return collectAsync(types, true);
+    }
+
+    /**
+     * Runs the probes for the requested types, and builds a snapshot from
+     * their results and, if carrying over, the types of the current snapshot
+     * that weren't probed.
+     * <p>
+     * The current snapshot is read once the probes finish rather than when they
+     * start, so that types published by a collection that finished in the meantime,
+     * such as a node that was shown during a slow recollect, aren't replaced with
+     * older values.
+     * </p>
+     *
+     * @param types The types of hardware to probe
+     * @param carryOver true to carry other types over from the current snapshot
+     * @return A future that completes with the new snapshot
+     */
+    private static CompletableFuture<HardwareSnapshot> collectAsync(Set<NodeInfo.HardwareType> types, boolean carryOver) {
+        Map<NodeInfo.HardwareType, CompletableFuture<HardwareProbe.Result>> results = new EnumMap<>(NodeInfo.HardwareType.class);
+        for (HardwareProbe probe : PROBES.values()) {
+            if (!types.contains(probe.getType())) {
+                continue;
+            }
+            ProbeCircuitBreaker breaker = getBreaker(probe.getType());
+            if (!breaker.tryAcquire()) {
+                // Skipped, so the last good entries are used
+                results.put(probe.getType(), CompletableFuture.completedFuture(null));
+                continue;
+            }
+            // copy() so the timeout doesn't complete the shared run
+            results.put(probe.getType(), startProbe(probe).copy()
+                    .orTimeout(getProbeTimeout(probe.getType()), TimeUnit.MILLISECONDS)
+                    .handle((values, exception) -> {
+                        if (exception != null) {
+                            breaker.recordFailure();
+                            return null;
+                        }
+                        breaker.recordSuccess();
+                        return values;
+                    }));
+        }
+
+        return CompletableFuture.allOf(results.values().toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignored -> {
+                    synchronized (SNAPSHOT_LOCK) {
+                        return mergeAndSet(results, carryOver ? snapshot : null);
+                    }
+                });
+    }
+
+    // Must hold SNAPSHOT_LOCK, so no other snapshot is set between reading the base and setting the merged snapshot
+    private static HardwareSnapshot mergeAndSet(Map<NodeInfo.HardwareType, CompletableFuture<HardwareProbe.Result>> results,
+                                                HardwareSnapshot base) {
+        HardwareSnapshot.Builder builder = HardwareSnapshot.makeBuilder();
+        if (base != null) {
+            for (NodeInfo.HardwareType type : NodeInfo.HardwareType.values()) {
+                if (!results.containsKey(type)) {
+                    builder.putFrom(base, type);
+                }
+            }
+        }
+        // Every future is complete at this point, so join() won't block
+        results.forEach((type, result) -> {
+            HardwareProbe.Result values = result.join();
+            HardwareProbe.Result lastGood = LAST_GOOD.get(type);
+            if (values != null) {
+                builder.put(type, values.values()).putIdentities(type, values.identities());
+            }
+            else if (lastGood != null) {
+                builder.put(type, lastGood.values()).putIdentities(type, lastGood.identities()).markStale(type);
+            }
+            else {
+                builder.markUnavailable(type);
+            }
+        });
+        HardwareSnapshot taken = builder.build();
+        setSnapshot(taken);
+        return taken;
+    }
+
+    /**
+     * Starts a probe on its own executor, unless its last run hasn't finished yet.
+     *
+     * @param probe The probe to start
+     * @return The probe's current run
+     */
+    private static CompletableFuture<HardwareProbe.Result> startProbe(HardwareProbe probe) {
+        NodeInfo.HardwareType type = probe.getType();
+        synchronized (PROBE_RUNS) {
+            CompletableFuture<HardwareProbe.Result> run = PROBE_RUNS.get(type);
+            if (run == null || run.isDone()) {
+                ExecutorService executor = PROBE_EXECUTORS.computeIfAbsent(type, key ->
+                        Executors.newSingleThreadExecutor(runnable -> {
+                            Thread thread = new Thread(runnable, "hardware-probe-" + key.name().toLowerCase());
+                            thread.setDaemon(true);
+                            return thread;
+                        }));
+                run = CompletableFuture.supplyAsync(() -> runProbe(probe), executor);
+                PROBE_RUNS.put(type, run);
+            }
+            return run;
+        }
+    }
+
+    // Gets the circuit breaker of a type, creating it if needed
+    private static ProbeCircuitBreaker getBreaker(NodeInfo.HardwareType type) {
+        synchronized (BREAKERS) {
+            return BREAKERS.computeIfAbsent(type, key -> new ProbeCircuitBreaker());
+        }
+    }
+
+    /**
+     * Gets how long a probe may run for. Can be set for every probe with
+     * {@value #PROBE_TIMEOUT_PROPERTY}, or for one type by appending its
+     * name, such as {@code hardwarespecget.probe.timeoutMillis.gpu}.
+     *
+     * @param type The type of hardware the probe collects
+     * @return The timeout in milliseconds
+     */
+    private static long getProbeTimeout(NodeInfo.HardwareType type) {
+        long timeout = Long.getLong(PROBE_TIMEOUT_PROPERTY, DEFAULT_PROBE_TIMEOUT);
+        return Long.getLong(PROBE_TIMEOUT_PROPERTY + "." + type.name().toLowerCase(), timeout);
+    }
+
+    /**
+     * Runs a probe, recording how long it took in a {@link ProbeEvent}
+     * and in {@link ProbeTimings}.
+     *
+     * @param probe The probe to run
+     * @return The probe's result
+     */
+    private static HardwareProbe.Result runProbe(HardwareProbe probe) {
+        NodeInfo.HardwareType type = probe.getType();
+        ProbeEvent event = new ProbeEvent();
+        event.probe = type.getValueAsString();
+        event.begin();
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            HardwareProbe.Result result = probe.probeWithIdentities();
+            event.itemCount = result.values().size();
+            failed = false;
+            return result;
+        }
+        catch (RuntimeException e) {
+            event.failure = e.toString();
+            throw e;
+        }
+        finally {
+            event.failed = failed;
+            event.commit();
+            ProbeTimings.record(type, System.nanoTime() - start, failed);
+        }
+    }
+
+    /**
+     * Discovers every {@link HardwareProbe} and picks the one with the highest
+     * priority for each type. Probes that aren't supported on this system are
+     * skipped.
+     *
+     * @return A map of hardware types to the probe that collects them
+     */
+    private static Map<NodeInfo.HardwareType, HardwareProbe> loadProbes() {
+        Map<NodeInfo.HardwareType, HardwareProbe> probes = new EnumMap<>(NodeInfo.HardwareType.class);
+        for (HardwareProbe probe : ServiceLoader.load(HardwareProbe.class, HardwareProbe.class.getClassLoader())) {
+            if (!probe.isSupported()) {
+                continue;
+            }
+            HardwareProbe existing = probes.get(probe.getType());
+            if (existing == null || probe.getPriority() > existing.getPriority()) {
+                probes.put(probe.getType(), probe);
+            }
+        }
+        return Collections.unmodifiableMap(probes);
+    }
+
+    /**
+     * @return An unmodifiable map of each type that can be collected to the probe that collects it
+     */
+    public static Map<NodeInfo.HardwareType, HardwareProbe> getProbes() {
+        return PROBES;
+    }
+
+    /**
+     * @return true if the operating system is Windows
+     */
+    static boolean isWindows() {
+        return sysInfo.getOperatingSystem().getFamily().equalsIgnoreCase("windows");
+    }
+
+    /**
+     * Replaces the current snapshot, such as with one loaded from the
+     * snapshot cache, without collecting anything.
+     *
+     * @param newSnapshot The snapshot every NodeInfo should read from
+     */
+    public static void setSnapshot(HardwareSnapshot newSnapshot) {
+        synchronized (SNAPSHOT_LOCK) {
+            snapshot = newSnapshot;
+            // Remember fresh entries, in case their probe fails next time
+            for (NodeInfo.HardwareType type : newSnapshot.getCollectedTypes()) {
+                if (!newSnapshot.isStale(type)) {
+                    LAST_GOOD.put(type, new HardwareProbe.Result(newSnapshot.getValues(type), newSnapshot.getIdentities(type)));
+                }
+            }
+            // Called in the order snapshots are set
+            for (Consumer<HardwareSnapshot> listener : SNAPSHOT_LISTENERS) {
+                listener.accept(newSnapshot);
+            }
+        }
+    }
+
+    /**
+     * Gets the current snapshot without taking one.
+     *
+     * @return The current snapshot, or empty if no snapshot has been taken or set yet
+     */
+    public static Optional<HardwareSnapshot> peekSnapshot() {
+        return Optional.ofNullable(snapshot);
+    }
+
+    /**
+     * Adds a listener that is called whenever the current snapshot is replaced.
+     * Listeners are called on the thread that replaced the snapshot, which is
+     * usually a probe thread, so they should return quickly.
+     *
+     * @param listener Called with the new snapshot
+     */
+    public static void addSnapshotListener(Consumer<HardwareSnapshot> listener) {
+        SNAPSHOT_LISTENERS.add(listener);
+    }
+
+    /**
+     * @param listener A listener previously passed to {@link #addSnapshotListener(Consumer)}
+     */
+    public static void removeSnapshotListener(Consumer<HardwareSnapshot> listener) {
+        SNAPSHOT_LISTENERS.remove(listener);
+    }
+
+    /**
+     * Reads the numeric values that change while the application runs, such as
+     * available memory and CPU load. This is much cheaper than a snapshot, since
+     * nothing has to be enumerated or formatted, and the changing values are read
+     * from the latest sample of the shared {@link LiveSampler}.
+     *
+     * @return The current metrics
+     */
+    public static HardwareMetrics takeMetrics() {
+        LiveSampler sampler = LiveSampler.getShared();
+        DiskTelemetry diskTelemetry = sampler.getDiskTelemetry();
+        List<HardwareMetrics.Disk> disks = new ArrayList<>(diskTelemetry.getDiskCount());
+        for (int i = 0; i < diskTelemetry.getDiskCount(); i++) {
+            disks.add(new HardwareMetrics.Disk(diskTelemetry.getName(i), diskTelemetry.getSize(i)));
+        }
+        return new HardwareMetrics(
+                sampler.getTotalMemory(),
+                sampler.getLatestAvailableMemory(),
+                disks,
+                sampler.getLatestCpuLoad(),
+                sampler.getLatestTimestamp());
+    }
+
+    /**
+     * Gets the current snapshot. If no snapshot has been taken yet,
+     * one will be taken.
+     *
+     * @return The current snapshot
+     */
+    public static HardwareSnapshot getSnapshot() {
+        HardwareSnapshot current = snapshot;
+        if (current == null) {
+            current = takeSnapshot();
+        }
+        return current;
+    }
+
+    /**
+     * Creates NodeInfo objects for the CPU, GPUs, RAM, Disk, and Motherboard
+     * found in the current snapshot, and places them in a list.
      *
      * @return A list of NodeInfo objects with all hardware types
      * @see NodeInfo
      */
     public static ArrayList<NodeInfo> collectHardware() {
+        return collectHardware(getSnapshot());
+    }
+
+    /**
+     * Creates NodeInfo objects for the CPU, GPUs, RAM, Disk, and Motherboard
+     * found in a snapshot, and places them in a list.
+     *
+     * @param snapshot The snapshot to read hardware counts from
+     * @return A list of NodeInfo objects with all hardware types
+     * @see NodeInfo
+     */
+    public static ArrayList<NodeInfo> collectHardware(HardwareSnapshot snapshot) {
         // Store collected hardware in this list
         ArrayList<NodeInfo> nodeList = new ArrayList<>();
 
         // Add each type of hardware to the list
         nodeList.add(new NodeInfo(NodeInfo.HardwareType.CPU));
-        // Storing size of list, since getGPUs() doesn't need to be called each iteration
-        int numGPUs = getGPUs().size();
+        int numCores = snapshot.getCount(NodeInfo.HardwareType.CPU_CORE);
+        for (int i = 0; i < numCores; i++) {
+            // Cores are only useful when tuning, so they start hidden
+            nodeList.add(new NodeInfo(NodeInfo.HardwareType.CPU_CORE, i, false));
+        }
+        int numGPUs = snapshot.getCount(NodeInfo.HardwareType.GPU);
         for (int i = 0; i < numGPUs; i++) {
             // Adding a GPU entry for every GPU found
             nodeList.add(new NodeInfo(NodeInfo.HardwareType.GPU, i));
         }
         nodeList.add(new NodeInfo(NodeInfo.HardwareType.RAM));
 
-        int numDisks = getDisk().size();
+        int numDisks = snapshot.getCount(NodeInfo.HardwareType.DISK);
         for (int i = 0; i < numDisks; i++) {
             // Adding a Disk entry for every disk found
             nodeList.add(new NodeInfo(NodeInfo.HardwareType.DISK, i));
         }
+        int numInterfaces = snapshot.getCount(NodeInfo.HardwareType.NETWORK);
+        for (int i = 0; i < numInterfaces; i++) {
+            nodeList.add(new NodeInfo(NodeInfo.HardwareType.NETWORK, i));
+        }
         nodeList.add(new NodeInfo(NodeInfo.HardwareType.MOTHERBOARD));
+        // Missing on most virtual machines
+        if (snapshot.getCount(NodeInfo.HardwareType.SENSORS) > 0) {
+            nodeList.add(new NodeInfo(NodeInfo.HardwareType.SENSORS));
+        }
 
         return nodeList;
     }
 
     /**
-     * Creates NodeInfo objects for the OS, Kernel, and Username,
-     * and places them in a list.
+     * Creates NodeInfo objects for the OS, Kernel, and Username found in
+     * the current snapshot, and places them in a list.
+     *
+     * @return A list of NodeInfo objects with system properties
+     * @see NodeInfo
+     */
+    public static ArrayList<NodeInfo> collectSystemInfo() {
+        return collectSystemInfo(getSnapshot());
+    }
+
+    /**
+     * Creates NodeInfo objects for the OS, Kernel, and Username found in
+     * a snapshot, and places them in a list.
      * <p>
-     * If the OS is Windows, the list will exclude the kernel.
+     * If the OS is Windows, the snapshot won't contain the kernel, so
+     * the list will exclude it.
      * </p>
      *
+     * @param snapshot The snapshot to read system properties from
      * @return A list of NodeInfo objects with system properties
      * @see NodeInfo
      */
-    public static ArrayList<NodeInfo> collectSystemInfo() {
+    public static ArrayList<NodeInfo> collectSystemInfo(HardwareSnapshot snapshot) {
         // Store collected system info in this list
         ArrayList<NodeInfo> nodeList = new ArrayList<>();
 
         nodeList.add(new NodeInfo(NodeInfo.HardwareType.OS));
 
-        // Do not add kernel to list on windows
-        if (!sysInfo.getOperatingSystem().getFamily().equalsIgnoreCase("windows")) {
+        // Kernel is not collected on windows
+        if (snapshot.contains(NodeInfo.HardwareType.KERNEL)) {
             nodeList.add(new NodeInfo(NodeInfo.HardwareType.KERNEL));
         }
 
         nodeList.add(new NodeInfo(NodeInfo.HardwareType.USERNAME));
 
+        // Sampling every process has a cost, so these start hidden
+        int numProcessLists = snapshot.getCount(NodeInfo.HardwareType.PROCESSES);
+        for (int i = 0; i < numProcessLists; i++) {
+            nodeList.add(new NodeInfo(NodeInfo.HardwareType.PROCESSES, i, false));
+        }
+
         return nodeList;
     }
 
@@ -191,87 +794,10 @@ public abstract class HardwareCollector {
      *
      * @param name The text to beautify
      * @return Beautified text
+     * @see NameNormalizer#beautify(String)
      */
     public static String beatifyName(String name) {
-        name = deepExtractFromBrackets(name);
-        name = removeRedundantText(name);
-        return name;
-    }
-
-    /**
-     * Removes redundant text that makes the string harder to read.
-     *
-     * @param name Text to remove text from
-     * @return name with redundant text removed
-     */
-    private static String removeRedundantText(String name) {
-        int searchIndex = 0;
-        while (searchIndex != -1) {
-            // Update the search index
-            searchIndex++;
-            searchIndex = name.indexOf('(', searchIndex);
-
-            if (name.startsWith("(R)", searchIndex)) {
-                name = name.substring(0, searchIndex) + name.substring(searchIndex + 3);
-            }
-            else if (name.startsWith("(TM)", searchIndex)) {
-                name = name.substring(0, searchIndex) + name.substring(searchIndex + 4);
-            }
-        }
-
-        return name;
-    }
-
-    /**
-     * Extracts the text from the innermost set of square brackets.
-     *
-     * @param text Text to remove brackets from
-     * @return name without brackets
-     */
-    private static String deepExtractFromBrackets(String text) {
-        int beginIndex = 0;
-        int endIndex = text.length();
-
-        beginIndex = text.indexOf('[', beginIndex);
-        endIndex = text.lastIndexOf(']', endIndex);
-
-        // Check for valid indices and that the brackets are properly closed
-        if ((beginIndex != -1 && endIndex != -1) && beginIndex < endIndex) {
-            // Get the text inside the found brackets, then look for more
-            text = text.substring(beginIndex + 1, endIndex);
-            return deepExtractFromBrackets(text);
-        }
-        else {
-            return text;
-        }
-    }
-
-    /**
-     * Capitalizes each letter before a space (and at the beginning of the string),
-     * and makes all other letters lowercase.
-     *
-     * @param text The text to turn into a title
-     * @return The text in title format
-     */
-    private static String toTitle(String text) {
-        int searchIndex = 0;
-        // Capitalize the first letter, lowercase all other letters
-        text = text.substring(0, 1).toUpperCase() + text.substring(1).toLowerCase();
-
-        // Then if spaces are detected capitalize each letter after a space
-        while (searchIndex != -1) {
-            // Update the search index
-            searchIndex++;
-            searchIndex = text.indexOf(' ', searchIndex);
-
-            // Ensure indices are valid
-            if ((searchIndex > -1) && (searchIndex + 2 <= text.length())) {
-                text = text.substring(0, searchIndex + 1)
-                        + text.substring(searchIndex + 1, searchIndex + 2).toUpperCase()
-                        + text.substring(searchIndex + 2);
-            }
-        }
-        return text;
+        return NameNormalizer.beautify(name);
     }
 
 }
@@ -0,0 +1,122 @@
+package belleisle.amiah.hardwarespecget;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Finds the hardware that was added, removed, or changed between two snapshots.
+ * <p>
+ * Entries are matched by their identity, such as a serial number, where the
+ * snapshot has one, and otherwise by type and index like {@link NodeInfo}. Entries
+ * sharing an identity, such as network interfaces bonded under one MAC address,
+ * are matched in index order among themselves. Types
+ * whose {@link HardwareSnapshot#getHash(NodeInfo.HardwareType) hash} is the same
+ * in both snapshots are skipped without looking at their entries, and the rest
+ * are compared in time linear in their number of entries.
+ * </p>
+ * <p>
+ * Only types collected in both snapshots are compared. A type that wasn't
+ * collected, is unavailable, or is stale in either snapshot says nothing about
+ * whether its hardware changed.
+ * </p>
+ */
+public abstract class HardwareDiff {
+
+    /**
+     * Compares two snapshots.
+     *
+     * @param older The earlier snapshot
+     * @param newer The later snapshot
+     * @return Every change, grouped by type in hardware type order
+     */
+    public static List<HardwareChange> diff(HardwareSnapshot older, HardwareSnapshot newer) {
+        List<HardwareChange> changes = new ArrayList<>();
+        for (NodeInfo.HardwareType type : NodeInfo.HardwareType.values()) {
+            if (!isComparable(older, type) || !isComparable(newer, type)) {
+                continue;
+            }
+            if (older.getHash(type) == newer.getHash(type)) {
+                continue;
+            }
+            diffType(older, newer, type, changes);
+        }
+        return changes;
+    }
+
+    // Whether a snapshot knows the current state of a type
+    private static boolean isComparable(HardwareSnapshot snapshot, NodeInfo.HardwareType type) {
+        return snapshot.contains(type) && !snapshot.isStale(type);
+    }
+
+    /**
+     * Compares the entries of a single type.
+     */
+    private static void diffType(HardwareSnapshot older, HardwareSnapshot newer,
+                                 NodeInfo.HardwareType type, List<HardwareChange> changes) {
+        int oldCount = older.getCount(type);
+        int newCount = newer.getCount(type);
+
+        // Identities are only compared if both snapshots have them, such as when one was
+        // read from a file written before they were saved
+        boolean byIdentity = !older.getIdentities(type).isEmpty() && !newer.getIdentities(type).isEmpty();
+
+        // Index of each old entry by its key, in index order so removals are reported in order
+        String[] oldKeys = keys(older, type, oldCount, byIdentity);
+        Map<String, Integer> oldIndexes = new LinkedHashMap<>(oldCount * 2);
+        for (int i = 0; i < oldCount; i++) {
+            oldIndexes.put(oldKeys[i], i);
+        }
+
+        String[] newKeys = keys(newer, type, newCount, byIdentity);
+        for (int i = 0; i < newCount; i++) {
+            Integer oldIndex = oldIndexes.remove(newKeys[i]);
+            String newContent = newer.getContent(type, i);
+            String identity = newer.getIdentity(type, i);
+            if (oldIndex == null) {
+                changes.add(new HardwareChange(HardwareChange.Kind.ADDED, type, i, null, newContent, identity));
+                continue;
+            }
+            String oldContent = older.getContent(type, oldIndex);
+            // The content of volatile types always changes, so only their identity is compared
+            boolean changed = type.isVolatile()
+                    ? byIdentity && !Objects.equals(older.getIdentity(type, oldIndex), identity)
+                    : !oldContent.equals(newContent);
+            if (changed) {
+                changes.add(new HardwareChange(HardwareChange.Kind.CHANGED, type, i, oldContent, newContent, identity));
+            }
+        }
+
+        // Whatever wasn't matched is gone
+        for (Map.Entry<String, Integer> entry : oldIndexes.entrySet()) {
+            int oldIndex = entry.getValue();
+            changes.add(new HardwareChange(HardwareChange.Kind.REMOVED, type, oldIndex,
+                    older.getContent(type, oldIndex), null, older.getIdentity(type, oldIndex)));
+        }
+    }
+
+    /**
+     * Gets the keys the entries of a type are matched by. Entries with an identity are
+     * matched by it and the number of earlier entries with the same identity, except for
+     * volatile types, whose identity describes the hardware rather than naming it.
+     * Everything else is matched by index.
+     */
+    private static String[] keys(HardwareSnapshot snapshot, NodeInfo.HardwareType type, int count, boolean byIdentity) {
+        String[] keys = new String[count];
+        Map<String, Integer> occurrences = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            String identity = byIdentity ? snapshot.getIdentity(type, i) : null;
+            if (identity == null || type.isVolatile()) {
+                keys[i] = "#" + i;
+                continue;
+            }
+            int occurrence = occurrences.merge(identity, 1, Integer::sum) - 1;
+            keys[i] = "=" + identity + "#" + occurrence;
+        }
+        return keys;
+    }
+
+}
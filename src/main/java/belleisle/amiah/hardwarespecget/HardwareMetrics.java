@@ -0,0 +1,28 @@
+package belleisle.amiah.hardwarespecget;
+
+import java.util.List;
+
+/**
+ * Numeric hardware values that change while the application runs.
+ * Unlike a {@link HardwareSnapshot}, nothing here is formatted for display.
+ *
+ * @param memoryTotal The total physical memory, in bytes
+ * @param memoryAvailable The available physical memory, in bytes
+ * @param disks The size of each disk, in the same order as the snapshot's disks
+ * @param cpuLoad The system CPU load, between 0 and 1
+ * @param timestamp The time the metrics were read, in milliseconds since the epoch
+ * @see HardwareCollector#takeMetrics()
+ */
+public record HardwareMetrics(long memoryTotal, long memoryAvailable, List<Disk> disks, double cpuLoad, long timestamp) {
+
+    public HardwareMetrics {
+        disks = List.copyOf(disks);
+    }
+
+    /**
+     * @param name The beautified name of the disk
+     * @param size The size of the disk, in bytes
+     */
+    public record Disk(String name, long size) {}
+
+}
@@ -0,0 +1,80 @@
+package belleisle.amiah.hardwarespecget;
+
+import java.util.List;
+
+/**
+ * A service that collects the entries for one type of hardware.
+ * <p>
+ * Probes are discovered with {@link java.util.ServiceLoader}, so a plugin can
+ * add or replace a probe by providing this service, either in its
+ * {@code module-info.java} or in {@code META-INF/services}. If more than one
+ * probe collects the same type, the one with the highest priority is used.
+ * </p>
+ * <p>
+ * Each probe runs on its own thread, and is abandoned if it doesn't finish
+ * within its timeout. A probe that hangs or throws therefore only affects its own
+ * type, which is reported as {@value HardwareSnapshot#UNAVAILABLE}.
+ * </p>
+ *
+ * @see BuiltInProbes
+ * @see HardwareCollector#takeSnapshotAsync(java.util.Set)
+ */
+public interface HardwareProbe {
+
+    /**
+     * @return The type of hardware this probe collects
+     */
+    NodeInfo.HardwareType getType();
+
+    /**
+     * Collects every entry of this probe's type. Called on the probe's own thread.
+     *
+     * @return The entries, in index order
+     */
+    List<String> probe();
+
+    /**
+     * Collects every entry of this probe's type, along with an identity for each
+     * entry where one is known. Probes that can read serial numbers should override
+     * this, so that swapped hardware can be told apart from reordered hardware.
+     *
+     * @return The entries and their identities
+     */
+    default Result probeWithIdentities() {
+        return new Result(probe(), List.of());
+    }
+
+    /**
+     * @return false if this probe can't run on the current system, in which
+     *         case its type isn't collected at all
+     */
+    default boolean isSupported() {
+        return true;
+    }
+
+    /**
+     * @return The priority of this probe over others of the same type.
+     *         Built in probes have a priority of 0.
+     */
+    default int getPriority() {
+        return 0;
+    }
+
+    /**
+     * The entries collected by a probe.
+     *
+     * @param values The entries, in index order
+     * @param identities A serial number or other stable identity for each entry, in the
+     *                   same order, or an empty list if none are known. Unknown
+     *                   identities within the list are empty strings.
+     */
+    record Result(List<String> values, List<String> identities) {
+
+        public Result {
+            values = List.copyOf(values);
+            identities = List.copyOf(identities);
+        }
+
+    }
+
+}
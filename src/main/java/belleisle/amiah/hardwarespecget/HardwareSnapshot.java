@@ -0,0 +1,492 @@
+package belleisle.amiah.hardwarespecget;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * An immutable record of the hardware information collected during a single refresh.
+ * <p>
+ * Each hardware class is enumerated once when the snapshot is taken. Every
+ * {@link NodeInfo} then reads its content from the snapshot, so the cost of a
+ * refresh does not grow with the number of GPUs or disks being displayed.
+ * </p>
+ *
+ * @see HardwareCollector#takeSnapshot()
+ */
+public final class HardwareSnapshot {
+
+    // Content of every entry of a type whose probe timed out or failed
+    public static final String UNAVAILABLE = "Unavailable";
+
+    // Used by read, since creating a factory is expensive
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final EnumMap<NodeInfo.HardwareType, List<String>> values;
+    private final EnumSet<NodeInfo.HardwareType> unavailable;
+    private final EnumSet<NodeInfo.HardwareType> stale;
+    private final EnumMap<NodeInfo.HardwareType, List<String>> identities;
+    // Hash of each type's entries, indexed by ordinal, so unchanged types can be skipped when diffing
+    private final long[] hashes;
+    private final long timestamp;
+
+    // Used by Builder
+    private HardwareSnapshot(EnumMap<NodeInfo.HardwareType, List<String>> values,
+                             EnumSet<NodeInfo.HardwareType> unavailable,
+                             EnumSet<NodeInfo.HardwareType> stale,
+                             EnumMap<NodeInfo.HardwareType, List<String>> identities, long timestamp) {
+        this.values = values;
+        this.unavailable = unavailable;
+        this.stale = stale;
+        this.identities = identities;
+        this.timestamp = timestamp;
+
+        NodeInfo.HardwareType[] types = NodeInfo.HardwareType.values();
+        this.hashes = new long[types.length];
+        for (NodeInfo.HardwareType type : types) {
+            hashes[type.ordinal()] = computeHash(type);
+        }
+    }
+
+    /**
+     * Creates a new Builder used to fill in a snapshot.
+     *
+     * @return A new Builder instance
+     */
+    public static Builder makeBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Gets the content collected for a piece of hardware.
+     *
+     * @param type The type of hardware
+     * @param index The index of the hardware, for types that can have multiple entries
+     * @return The collected content, {@value #UNAVAILABLE} if the type's probe didn't finish,
+     *         or {@code null} if the type was not collected or the index is out of range
+     */
+    public String getContent(NodeInfo.HardwareType type, int index) {
+        if (unavailable.contains(type)) {
+            return UNAVAILABLE;
+        }
+        List<String> list = values.get(type);
+        if (list == null || index < 0 || index >= list.size()) {
+            return null;
+        }
+        return list.get(index);
+    }
+
+    /**
+     * @param type The type of hardware
+     * @return The number of entries collected for the type, or 0 if it wasn't collected
+     */
+    public int getCount(NodeInfo.HardwareType type) {
+        List<String> list = values.get(type);
+        return list == null ? 0 : list.size();
+    }
+
+    /**
+     * @param type The type of hardware
+     * @return An unmodifiable list of the entries collected for the type
+     */
+    public List<String> getValues(NodeInfo.HardwareType type) {
+        return values.getOrDefault(type, List.of());
+    }
+
+    /**
+     * Gets the identity of a piece of hardware, such as its serial number.
+     *
+     * @param type The type of hardware
+     * @param index The index of the hardware
+     * @return The identity, or {@code null} if it isn't known
+     */
+    public String getIdentity(NodeInfo.HardwareType type, int index) {
+        List<String> list = identities.get(type);
+        if (list == null || index < 0 || index >= list.size() || list.get(index).isEmpty()) {
+            return null;
+        }
+        return list.get(index);
+    }
+
+    /**
+     * @param type The type of hardware
+     * @return An unmodifiable list of the identity of each entry of the type,
+     *         or an empty list if none are known
+     */
+    public List<String> getIdentities(NodeInfo.HardwareType type) {
+        return identities.getOrDefault(type, List.of());
+    }
+
+    /**
+     * Gets a hash of everything the snapshot knows about a type. If two snapshots
+     * have the same hash for a type, the type is treated as unchanged between them.
+     * For {@link NodeInfo.HardwareType#isVolatile() volatile} types only the number
+     * of entries and their identities are hashed, since their content always changes.
+     *
+     * @param type The type of hardware
+     * @return The hash of the type
+     */
+    public long getHash(NodeInfo.HardwareType type) {
+        return hashes[type.ordinal()];
+    }
+
+    // Used by the constructor
+    private long computeHash(NodeInfo.HardwareType type) {
+        if (unavailable.contains(type)) {
+            return -1;
+        }
+        List<String> list = values.get(type);
+        if (list == null) {
+            return 0;
+        }
+        long hash = 17 + list.size();
+        if (!type.isVolatile()) {
+            for (String value : list) {
+                hash = hash * 1_000_003 + value.hashCode();
+            }
+        }
+        for (String identity : getIdentities(type)) {
+            hash = hash * 1_000_003 + identity.hashCode();
+        }
+        return hash;
+    }
+
+    /**
+     * @param type The type of hardware
+     * @return true if the type was collected in this snapshot, false otherwise
+     */
+    public boolean contains(NodeInfo.HardwareType type) {
+        return values.containsKey(type);
+    }
+
+    /**
+     * @param type The type of hardware
+     * @return true if the type's probe timed out or failed, so nothing is known about it
+     */
+    public boolean isUnavailable(NodeInfo.HardwareType type) {
+        return unavailable.contains(type);
+    }
+
+    /**
+     * @param type The type of hardware
+     * @return true if the type's entries are the last good values of a probe
+     *         that is currently failing, rather than freshly collected
+     */
+    public boolean isStale(NodeInfo.HardwareType type) {
+        return stale.contains(type);
+    }
+
+    /**
+     * @return An unmodifiable set of every type whose entries are stale
+     */
+    public Set<NodeInfo.HardwareType> getStaleTypes() {
+        return Collections.unmodifiableSet(stale);
+    }
+
+    /**
+     * @return An unmodifiable set of every type whose probe timed out or failed
+     */
+    public Set<NodeInfo.HardwareType> getUnavailableTypes() {
+        return Collections.unmodifiableSet(unavailable);
+    }
+
+    /**
+     * @return An unmodifiable set of every type collected in this snapshot
+     */
+    public Set<NodeInfo.HardwareType> getCollectedTypes() {
+        return Collections.unmodifiableSet(values.keySet());
+    }
+
+    /**
+     * @return The time the snapshot was built, in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Writes this snapshot as a JSON object. Each collected type is written as
+     * an array of its entries, in index order.
+     *
+     * @param generator The generator to write to
+     * @throws IOException If the generator is unable to write
+     */
+    public void writeJson(JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("timestamp", timestamp);
+        generator.writeObjectFieldStart("hardware");
+        for (Map.Entry<NodeInfo.HardwareType, List<String>> entry : values.entrySet()) {
+            generator.writeArrayFieldStart(entry.getKey().getValueAsString());
+            for (String value : entry.getValue()) {
+                generator.writeString(value);
+            }
+            generator.writeEndArray();
+        }
+        generator.writeEndObject();
+        if (!identities.isEmpty()) {
+            generator.writeObjectFieldStart("identities");
+            for (Map.Entry<NodeInfo.HardwareType, List<String>> entry : identities.entrySet()) {
+                generator.writeArrayFieldStart(entry.getKey().getValueAsString());
+                for (String identity : entry.getValue()) {
+                    generator.writeString(identity);
+                }
+                generator.writeEndArray();
+            }
+            generator.writeEndObject();
+        }
+        writeTypes(generator, "unavailable", unavailable);
+        writeTypes(generator, "stale", stale);
+        generator.writeEndObject();
+    }
+
+    // Writes a set of types as an array of names, if it isn't empty
+    private static void writeTypes(JsonGenerator generator, String field, Set<NodeInfo.HardwareType> types) throws IOException {
+        if (types.isEmpty()) {
+            return;
+        }
+        generator.writeArrayFieldStart(field);
+        for (NodeInfo.HardwareType type : types) {
+            generator.writeString(type.getValueAsString());
+        }
+        generator.writeEndArray();
+    }
+
+    /**
+     * Reads a snapshot file, in either the JSON or binary format.
+     *
+     * @param file The file to read
+     * @return The snapshot in the file
+     * @throws IOException If the file can't be read or isn't a snapshot
+     */
+    public static HardwareSnapshot read(Path file) throws IOException {
+        if (BinaryFormat.isBinary(file)) {
+            return BinaryFormat.readSnapshot(file);
+        }
+        try (JsonParser parser = JSON_FACTORY.createParser(file.toFile())) {
+            return readJson(parser);
+        }
+    }
+
+    /**
+     * Reads a snapshot from a JSON object written by {@link #writeJson(JsonGenerator)}.
+     * Types that aren't recognized are skipped.
+     *
+     * @param parser The parser to read from, positioned before or at the start of the object
+     * @return The snapshot that was read
+     * @throws IOException If the parser is unable to read, or the JSON isn't a snapshot
+     */
+    public static HardwareSnapshot readJson(JsonParser parser) throws IOException {
+        if (parser.currentToken() == null) {
+            parser.nextToken();
+        }
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "Expected the start of a snapshot object");
+        }
+
+        Builder builder = makeBuilder();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "timestamp" -> builder.setTimestamp(parser.getLongValue());
+                case "hardware" -> readHardware(parser, builder::put);
+                case "identities" -> readHardware(parser, builder::putIdentities);
+                case "unavailable" -> readTypes(parser, builder::markUnavailable);
+                case "stale" -> readTypes(parser, builder::markStale);
+                default -> parser.skipChildren();
+            }
+        }
+        return builder.build();
+    }
+
+    // Reads an object of type names to arrays of strings, passing each known type to the consumer
+    private static void readHardware(JsonParser parser, BiConsumer<NodeInfo.HardwareType, List<String>> consumer) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "Expected the start of an object of hardware types");
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            NodeInfo.HardwareType type = NodeInfo.HardwareType.stringToValue(parser.currentName());
+            if (parser.nextToken() != JsonToken.START_ARRAY || type == null) {
+                parser.skipChildren();
+                continue;
+            }
+            ArrayList<String> list = new ArrayList<>();
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                list.add(parser.getValueAsString(""));
+            }
+            consumer.accept(type, list);
+        }
+    }
+
+    // Reads an array of type names, passing each known type to the consumer
+    private static void readTypes(JsonParser parser, Consumer<NodeInfo.HardwareType> consumer) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            NodeInfo.HardwareType type = NodeInfo.HardwareType.stringToValue(parser.getValueAsString(""));
+            if (type != null) {
+                consumer.accept(type);
+            }
+        }
+    }
+
+    public static class Builder {
+
+        private final EnumMap<NodeInfo.HardwareType, List<String>> values = new EnumMap<>(NodeInfo.HardwareType.class);
+        private final EnumSet<NodeInfo.HardwareType> unavailable = EnumSet.noneOf(NodeInfo.HardwareType.class);
+        private final EnumSet<NodeInfo.HardwareType> stale = EnumSet.noneOf(NodeInfo.HardwareType.class);
+        private final EnumMap<NodeInfo.HardwareType, List<String>> identities = new EnumMap<>(NodeInfo.HardwareType.class);
+        private long timestamp = -1;
+
+        // Used by makeBuilder
+        private Builder() {
+        }
+
+        /**
+         * Sets the single entry collected for a type of hardware.
+         *
+         * @param type The type of hardware
+         * @param value The collected content
+         * @return this
+         */
+        public Builder put(NodeInfo.HardwareType type, String value) {
+            unavailable.remove(type);
+            stale.remove(type);
+            identities.remove(type);
+            values.put(type, List.of(value));
+            return this;
+        }
+
+        /**
+         * Sets every entry collected for a type of hardware.
+         *
+         * @param type The type of hardware
+         * @param list The collected content, in index order
+         * @return this
+         */
+        public Builder put(NodeInfo.HardwareType type, List<String> list) {
+            unavailable.remove(type);
+            stale.remove(type);
+            identities.remove(type);
+            values.put(type, Collections.unmodifiableList(new ArrayList<>(list)));
+            return this;
+        }
+
+        /**
+         * Sets the identity of every entry of a type, such as serial numbers. Must
+         * be called after the entries are put, and is ignored by {@link #build()}
+         * if the number of identities doesn't match the number of entries.
+         *
+         * @param type The type of hardware
+         * @param list The identity of each entry, in index order. Unknown identities are empty strings.
+         * @return this
+         */
+        public Builder putIdentities(NodeInfo.HardwareType type, List<String> list) {
+            if (list.isEmpty()) {
+                identities.remove(type);
+            }
+            else {
+                identities.put(type, Collections.unmodifiableList(new ArrayList<>(list)));
+            }
+            return this;
+        }
+
+        /**
+         * Copies everything known about a type from another snapshot, including
+         * whether it is stale or unavailable. Does nothing if the other snapshot
+         * knows nothing about the type.
+         *
+         * @param other The snapshot to copy from
+         * @param type The type of hardware
+         * @return this
+         */
+        public Builder putFrom(HardwareSnapshot other, NodeInfo.HardwareType type) {
+            if (other.isUnavailable(type)) {
+                markUnavailable(type);
+            }
+            else if (other.contains(type)) {
+                put(type, other.getValues(type));
+                putIdentities(type, other.getIdentities(type));
+                if (other.isStale(type)) {
+                    markStale(type);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Marks a type as unavailable, because its probe timed out or failed.
+         * Any entries already put for the type are removed.
+         *
+         * @param type The type of hardware
+         * @return this
+         */
+        public Builder markUnavailable(NodeInfo.HardwareType type) {
+            values.remove(type);
+            identities.remove(type);
+            stale.remove(type);
+            unavailable.add(type);
+            return this;
+        }
+
+        /**
+         * Marks the entries put for a type as stale, because they are the last
+         * good values of a probe that is currently failing. Does nothing if
+         * no entries have been put for the type.
+         *
+         * @param type The type of hardware
+         * @return this
+         */
+        public Builder markStale(NodeInfo.HardwareType type) {
+            if (values.containsKey(type)) {
+                stale.add(type);
+            }
+            return this;
+        }
+
+        /**
+         * Sets when the snapshot was taken. If unset, the time {@link #build()}
+         * is called is used.
+         *
+         * @param timestamp The time in milliseconds since the epoch
+         * @return this
+         */
+        public Builder setTimestamp(long timestamp) {
+            this.timestamp = timestamp;
+            return this;
+        }
+
+        /**
+         * Constructs and returns the snapshot. The builder should not be
+         * used after calling this method.
+         *
+         * @return HardwareSnapshot
+         */
+        public HardwareSnapshot build() {
+            // Identities that don't line up with their entries can't be used
+            identities.entrySet().removeIf(entry -> {
+                List<String> list = values.get(entry.getKey());
+                return list == null || list.size() != entry.getValue().size();
+            });
+            return new HardwareSnapshot(values, unavailable, stale, identities, timestamp >= 0 ? timestamp : System.currentTimeMillis());
+        }
+
+    }
+
+}
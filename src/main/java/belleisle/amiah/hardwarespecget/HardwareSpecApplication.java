@@ -1,16 +1,21 @@
 package belleisle.amiah.hardwarespecget;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.beans.binding.Bindings;
 import javafx.beans.binding.DoubleBinding;
 import javafx.beans.property.SimpleBooleanProperty;
+import javafx.beans.property.SimpleStringProperty;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Cursor;
 import javafx.scene.Scene;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
+import javafx.scene.control.Label;
 import javafx.scene.control.ScrollPane;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.HBox;
@@ -19,7 +24,13 @@ import javafx.stage.Stage;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.EnumSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 public class HardwareSpecApplication extends Application {
 
@@ -27,6 +38,17 @@ public class HardwareSpecApplication extends Application {
     public static Image DEFAULT_ICON;
     public static final String APP_TITLE = "Hardware Specifications";
     public static final SimpleBooleanProperty IS_EDIT_MODE = new SimpleBooleanProperty(false);
+    // True while hardware is being collected in the background
+    public static final SimpleBooleanProperty IS_COLLECTING = new SimpleBooleanProperty(false);
+    // Number of collections in progress. Only accessed from the JavaFX application thread.
+    private static int runningCollections = 0;
+    // Held while writing the snapshot cache, so collections finishing together write it in order
+    private static final Object SNAPSHOT_FILE_LOCK = new Object();
+
+    private AutosaveWriter autosave = null;
+    private MetricsServer metricsServer = null;
+    // Queues a live refresh after each sample, removed when the application stops
+    private Runnable sampleListener = null;
 
     @Override
     public void start(Stage stage) throws IOException {
@@ -65,6 +87,9 @@ public class HardwareSpecApplication extends Application {
         leftOptionsHbox.setSpacing(3);
         leftImageVbox.setPadding(new Insets(5));
         leftImageVbox.setAlignment(Pos.CENTER);
+        // Nodes fill the width of the scroll panes through layout, rather than listening to the stage
+        rightScrollPane.setFitToWidth(true);
+        leftScrollPane.setFitToWidth(true);
 
         // Setting pane colors
         rightScrollPane.setStyle("-fx-background: " + "#393a3e" + ";" + "-fx-background-color: " + "#393a3e" + ";" );
@@ -80,9 +105,11 @@ public class HardwareSpecApplication extends Application {
         Button replaceIconButton = new Button("Set Icon");
         Button saveButton = new Button("Save");
         Button recollectButton = new Button("Recollect Info");
+        Button timingsButton = new Button("Probe Timings");
+        Label statusLabel = new Label();
         ImageView mainIcon = new ImageView();
         // Adding Controls
-        leftOptionsHbox.getChildren().addAll(toggleEditModeButton, replaceIconButton, saveButton, recollectButton);
+        leftOptionsHbox.getChildren().addAll(toggleEditModeButton, replaceIconButton, saveButton, recollectButton, timingsButton, statusLabel);
         leftImageVbox.getChildren().add(mainIcon);
         // Setting control properties
         // mainIcon Properties
@@ -97,6 +124,10 @@ public class HardwareSpecApplication extends Application {
         // Adding to the width and height creates padding
         mainIcon.scaleXProperty().bind(smallestDimension.divide(mainIcon.fitWidthProperty().add(10)));
         mainIcon.scaleYProperty().bind(smallestDimension.divide(mainIcon.fitHeightProperty().add(10)));
+        // Loading state while hardware is collected
+        leftOptionsHbox.setAlignment(Pos.CENTER_LEFT);
+        recollectButton.disableProperty().bind(IS_COLLECTING);
+        saveButton.disableProperty().bind(IS_COLLECTING);
 
         /* =================== *
          * Creating Node Lists *
@@ -106,6 +137,75 @@ public class HardwareSpecApplication extends Application {
         NodeList rightNodeList = new NodeList(rightScrollPaneVbox.getChildren());
         NodeList leftNodeList = new NodeList(leftScrollPaneVbox.getChildren());
 
+        /* ======== *
+         * Autosave *
+         * ======== */
+
+        autosave = new AutosaveWriter(leftNodeList, rightNodeList, mainIcon::getImage);
+        // Status shows collection progress first, then the result of the most recent save
+        statusLabel.textProperty().bind(Bindings.when(IS_COLLECTING)
+                .then("Collecting...")
+                .otherwise(Bindings.createStringBinding(
+                        () -> autosave.statusProperty().get().getValueAsString(), autosave.statusProperty())));
+        statusLabel.styleProperty().bind(Bindings.when(autosave.statusProperty().isEqualTo(AutosaveWriter.SaveStatus.FAILED))
+                .then("-fx-text-fill: #ff6b6b;")
+                .otherwise("-fx-text-fill: #d0d0d0;"));
+
+        /* ============= *
+         * Live Sampling *
+         * ============= */
+
+        // Built once, so publishing a sample doesn't create a new Runnable each time.
+        // Refreshes are coalesced, so a busy application thread never has more than one queued.
+        // The sampler starts on its own thread, and live content is shown once its first sample is published.
+        CompletableFuture<LiveSampler> sharedSampler = LiveSampler.getSharedAsync();
+        // Per-core, disk and network readings, sensors and processes are only polled while one of their nodes is shown
+        SensorPoller sensorPoller = SensorPoller.getShared();
+        ProcessTracker processTracker = ProcessTracker.getShared();
+        Runnable updatePolling = () -> {
+            LiveSampler sampler = sharedSampler.getNow(null);
+            // Set once the sampler is published, by the first refresh
+            if (sampler != null) {
+                sampler.setShown(NodeInfo.HardwareType.CPU_CORE, leftNodeList.hasShownNode(NodeInfo.HardwareType.CPU_CORE)
+                        || rightNodeList.hasShownNode(NodeInfo.HardwareType.CPU_CORE));
+                sampler.setShown(NodeInfo.HardwareType.DISK, leftNodeList.hasShownNode(NodeInfo.HardwareType.DISK)
+                        || rightNodeList.hasShownNode(NodeInfo.HardwareType.DISK));
+                sampler.setShown(NodeInfo.HardwareType.NETWORK, leftNodeList.hasShownNode(NodeInfo.HardwareType.NETWORK)
+                        || rightNodeList.hasShownNode(NodeInfo.HardwareType.NETWORK));
+            }
+            sensorPoller.setActive(leftNodeList.hasShownNode(NodeInfo.HardwareType.SENSORS)
+                    || rightNodeList.hasShownNode(NodeInfo.HardwareType.SENSORS));
+            processTracker.setActive(leftNodeList.hasShownNode(NodeInfo.HardwareType.PROCESSES)
+                    || rightNodeList.hasShownNode(NodeInfo.HardwareType.PROCESSES));
+        };
+        AtomicBoolean refreshQueued = new AtomicBoolean(false);
+        Runnable refreshLiveContent = () -> {
+            refreshQueued.set(false);
+            // Only queued by the sampler, so it has been published
+            LiveSampler sampler = sharedSampler.join();
+            leftNodeList.refreshLiveContent(sampler);
+            rightNodeList.refreshLiveContent(sampler);
+            // Also catches nodes added by a collection
+            updatePolling.run();
+        };
+        sampleListener = () -> {
+            if (refreshQueued.compareAndSet(false, true)) {
+                Platform.runLater(refreshLiveContent);
+            }
+        };
+        sharedSampler.thenAccept(sampler -> {
+            sampler.addListener(sampleListener);
+            // Shows the first sample, which was published before the listener was added
+            sampleListener.run();
+        });
+
+        Runnable onLayoutChanged = () -> {
+            autosave.markDirty();
+            updatePolling.run();
+        };
+        leftNodeList.setOnLayoutChanged(onLayoutChanged);
+        rightNodeList.setOnLayoutChanged(onLayoutChanged);
+
         /* ========= *
          * Listeners *
          * ========= */
@@ -145,43 +245,26 @@ public class HardwareSpecApplication extends Application {
             }
         });
 
-        saveButton.setOnAction(event -> {
-            // Save the image and node lists and store whether they were successful
-            boolean savedImg = FileUtil.saveImage(mainIcon.getImage());
-            boolean savedLists = FileUtil.saveNodeLists(leftNodeList, rightNodeList);
-            // Create alert to show to user.
-            Alert msg = AlertBuilder.makeBuilder(Alert.AlertType.INFORMATION)
-                    .setWindowTitle("Save Status")
-                    .setHeaderText("Saved Successfully")
-                    .setMessage("Saved all preferences successfully")
-                    .build();
-            // If one type of save was successful, but not both
-            if ((savedImg || savedLists) && !(savedImg && savedLists)) {
-                 msg.setAlertType(Alert.AlertType.WARNING);
-                 msg.setHeaderText("Partially Saved");
-                 if (savedImg) {
-                     msg.setContentText("Saved icon successfully. Unable to save hardware information.");
-                 }
-                 else {
-                     msg.setContentText("Saved hardware information successfully. Unable to save icon.");
-                 }
-            }
-            // If neither were successful
-            else if (!(savedImg && savedLists)) {
-                msg.setAlertType(Alert.AlertType.ERROR);
-                msg.setHeaderText("Save Error");
-                msg.setContentText("Unable to save preferences.");
+        saveButton.setOnAction(event -> autosave.saveNow());
+
+        Consumer<HardwareSnapshot> updateNodes = snapshot -> {
+            // Only update what changed, keeping the user's ordering and hidden nodes
+            boolean layoutChanged = NodeList.updateNodes(leftNodeList, rightNodeList,
+                    HardwareCollector.collectSystemInfo(snapshot),
+                    HardwareCollector.collectHardware(snapshot),
+                    snapshot);
+            if (layoutChanged) {
+                autosave.markDirty();
             }
-            // Finally show the message
-            msg.showAndWait();
-        });
+        };
+        // Hardware whose nodes are all hidden isn't probed until one of them is shown
+        Runnable recollect = () -> collectInBackground(NodeList.getDemandedTypes(leftNodeList, rightNodeList), updateNodes, () -> {});
+        recollectButton.setOnAction(event -> recollect.run());
+        Consumer<NodeInfo> onNodeShown = info -> collectInBackground(EnumSet.of(info.getType()), updateNodes, () -> {});
+        leftNodeList.setOnNodeShown(onNodeShown);
+        rightNodeList.setOnNodeShown(onNodeShown);
 
-        recollectButton.setOnAction(event -> {
-            leftNodeList.clearNonUserNodes();
-            leftNodeList.addAllNodes(HardwareCollector.collectSystemInfo());
-            rightNodeList.clearNonUserNodes();
-            rightNodeList.addAllNodes(HardwareCollector.collectHardware());
-        });
+        timingsButton.setOnAction(event -> showProbeTimings());
 
         mainIcon.setOnMouseClicked(event -> {
             if (mainIcon.getImage().equals(DEFAULT_ICON)) {
@@ -203,14 +286,160 @@ public class HardwareSpecApplication extends Application {
          * Load Data *
          * ========= */
 
-        if (!FileUtil.loadNodeLists(leftNodeList, rightNodeList)) {
-            leftNodeList.addAllNodes(HardwareCollector.collectSystemInfo());
-            rightNodeList.addAllNodes(HardwareCollector.collectHardware());
-        }
         FileUtil.loadImage(mainIcon);
+        // Listen after loading, so that loading the saved icon doesn't count as an edit
+        mainIcon.imageProperty().addListener(event -> autosave.markDirty());
+        Optional<HardwareSnapshot> cachedSnapshot = FileUtil.loadSnapshot();
+        if (cachedSnapshot.isPresent()) {
+            // Display the values from the last run immediately, then patch in anything
+            // that changed once the hardware has been collected again
+            HardwareCollector.setSnapshot(cachedSnapshot.get());
+            loadNodeLists(leftNodeList, rightNodeList, cachedSnapshot.get());
+            autosave.setLoaded();
+            recollect.run();
+        }
+        else {
+            // Saved nodes read from the snapshot, so only load them once it has been collected.
+            // Until then autosave holds any edits, such as setting the icon.
+            collectInBackground(EnumSet.allOf(NodeInfo.HardwareType.class),
+                    snapshot -> {
+                        loadNodeLists(leftNodeList, rightNodeList, snapshot);
+                        autosave.setLoaded();
+                    },
+                    () -> {
+                        // Still show the saved layout, with nothing detected, so saving doesn't replace it
+                        if (HardwareCollector.peekSnapshot().isEmpty()) {
+                            HardwareCollector.setSnapshot(HardwareSnapshot.makeBuilder().build());
+                        }
+                        loadNodeLists(leftNodeList, rightNodeList, HardwareCollector.getSnapshot());
+                        autosave.setLoaded();
+                    });
+        }
+
+        try {
+            metricsServer = MetricsServer.startFromProperty();
+        }
+        catch (IOException | NumberFormatException e) {
+            AlertBuilder.makeBuilder(Alert.AlertType.ERROR)
+                    .setWindowTitle("Error")
+                    .setHeaderText("An Error has Occurred")
+                    .setMessage("Unable to start the metrics server.")
+                    .build()
+                    .show();
+        }
+    }
+
+    /**
+     * Loads the saved nodes into the lists, or the default nodes if
+     * there are no saved nodes.
+     *
+     * @param left The left list
+     * @param right The right list
+     * @param snapshot The snapshot to create the default nodes from
+     */
+    private static void loadNodeLists(NodeList left, NodeList right, HardwareSnapshot snapshot) {
+        if (!FileUtil.loadNodeLists(left, right)) {
+            left.addAllNodes(HardwareCollector.collectSystemInfo(snapshot));
+            right.addAllNodes(HardwareCollector.collectHardware(snapshot));
+        }
+    }
+
+    @Override
+    public void stop() {
+        // Write any edits made during the quiet period before exiting
+        if (autosave != null) {
+            autosave.close();
+        }
+        if (metricsServer != null) {
+            metricsServer.close();
+        }
+        if (sampleListener != null) {
+            Runnable listener = sampleListener;
+            LiveSampler.getSharedAsync().thenAccept(sampler -> sampler.removeListener(listener));
+        }
+        SensorPoller.getShared().setActive(false);
+        ProcessTracker.getShared().setActive(false);
+    }
+
+    /**
+     * Probes the given types off of the JavaFX application thread, carrying every
+     * other type over from the current snapshot, then passes the new snapshot to
+     * {@code onCollected} on the JavaFX application thread. {@link #IS_COLLECTING}
+     * is true until every {@code onCollected} in progress has finished.
+     * <p>
+     * Another collection may have finished after this one, so the newest snapshot
+     * is cached and published rather than the one this collection returned.
+     * </p>
+     *
+     * @param types The types of hardware to probe
+     * @param onCollected Publishes the snapshot to the node lists
+     * @param onFailed Called on the JavaFX application thread if the hardware couldn't be collected
+     */
+    private static void collectInBackground(Set<NodeInfo.HardwareType> types, Consumer<HardwareSnapshot> onCollected,
+                                            Runnable onFailed) {
+        runningCollections++;
+        IS_COLLECTING.set(true);
+        HardwareCollector.refreshSnapshotAsync(types).whenComplete((snapshot, exception) -> {
+            if (exception == null) {
+                // Cache the snapshot for the next start. It's only a cache, so failures are ignored.
+                synchronized (SNAPSHOT_FILE_LOCK) {
+                    try {
+                        FileUtil.writeSnapshotFile(HardwareCollector.getSnapshot());
+                    }
+                    catch (IOException | SecurityException ignored) {
+                    }
+                }
+            }
+        }).whenComplete((snapshot, exception) -> Platform.runLater(() -> {
+            if (exception == null) {
+                onCollected.accept(HardwareCollector.getSnapshot());
+            }
+            else {
+                AlertBuilder.makeBuilder(Alert.AlertType.ERROR)
+                        .setWindowTitle("Error")
+                        .setHeaderText("An Error has Occurred")
+                        .setMessage("Unable to collect the hardware information.")
+                        .build()
+                        .show();
+                onFailed.run();
+            }
+            runningCollections--;
+            IS_COLLECTING.set(runningCollections > 0);
+        }));
+    }
+
+    /**
+     * Shows the recent p50 and p99 latency of each probe in a table.
+     * Doesn't block, and the table isn't updated while it is open.
+     */
+    private static void showProbeTimings() {
+        TableView<ProbeTimings.Summary> table = new TableView<>();
+        TableColumn<ProbeTimings.Summary, String> probeColumn = new TableColumn<>("Probe");
+        probeColumn.setCellValueFactory(cell -> new SimpleStringProperty(cell.getValue().type().getValueAsString()));
+        TableColumn<ProbeTimings.Summary, String> runsColumn = new TableColumn<>("Runs");
+        runsColumn.setCellValueFactory(cell -> new SimpleStringProperty(Integer.toString(cell.getValue().runs())));
+        TableColumn<ProbeTimings.Summary, String> failedColumn = new TableColumn<>("Failed");
+        failedColumn.setCellValueFactory(cell -> new SimpleStringProperty(Integer.toString(cell.getValue().failures())));
+        TableColumn<ProbeTimings.Summary, String> p50Column = new TableColumn<>("p50 (ms)");
+        p50Column.setCellValueFactory(cell -> new SimpleStringProperty(String.format("%.3f", cell.getValue().p50Millis())));
+        TableColumn<ProbeTimings.Summary, String> p99Column = new TableColumn<>("p99 (ms)");
+        p99Column.setCellValueFactory(cell -> new SimpleStringProperty(String.format("%.3f", cell.getValue().p99Millis())));
+        table.getColumns().addAll(List.of(probeColumn, runsColumn, failedColumn, p50Column, p99Column));
+        table.getItems().setAll(ProbeTimings.getSummaries());
+        table.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY_FLEX_LAST_COLUMN);
+        table.setPrefSize(420, 260);
+
+        Alert alert = AlertBuilder.makeBuilder(Alert.AlertType.INFORMATION)
+                .setWindowTitle("Probe Timings")
+                .setHeaderText("Recent Probe Latency")
+                .build();
+        alert.getDialogPane().setContent(table);
+        alert.show();
     }
 
+    // Headless mode needs Launcher as the main class, since the toolkit starts before this runs
     public static void main(String[] args) {
+        ProbeTimings.dumpOnExitIfRequested();
         launch();
     }
 
@@ -0,0 +1,363 @@
+package belleisle.amiah.hardwarespecget;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+/**
+ * A headless entry point that collects hardware information and writes it to
+ * standard output, without ever starting the JavaFX toolkit.
+ * <p>
+ * Usage: {@code --headless [--format json|csv] [--types cpu,gpu,...]}
+ * </p>
+ * <p>
+ * With {@code --fleet <path>}, no hardware is collected. Instead, the snapshots
+ * exported by many hosts are aggregated and the resulting {@link FleetIndex} is
+ * written as JSON.
+ * </p>
+ * <p>
+ * With {@code --diff <file>}, the collected hardware is compared with a snapshot
+ * written earlier, and each {@link HardwareChange} is written instead of the snapshot.
+ * </p>
+ * <p>
+ * With {@code --serve <port>}, the snapshot is served by a {@link MetricsServer}
+ * on localhost instead of being written, until the process is stopped.
+ * </p>
+ * <p>
+ * Only the probes for the requested types are run. If no types are given,
+ * every type that can be collected is.
+ * </p>
+ */
+public abstract class InventoryCli {
+
+    public static final String HEADLESS_ARG = "--headless";
+
+    // Exit codes
+    private static final int EXIT_PROBE_FAILED = 1;
+    private static final int EXIT_BAD_ARGS = 2;
+
+    private static final String USAGE = "Usage: " + HEADLESS_ARG + " [--format json|csv] [--types cpu,gpu,...]"
+            + System.lineSeparator() + "       " + HEADLESS_ARG + " --fleet <directory or .jsonl file>"
+            + System.lineSeparator() + "       " + HEADLESS_ARG + " [--format json|csv] [--types cpu,gpu,...] --diff <snapshot file>"
+            + System.lineSeparator() + "       " + HEADLESS_ARG + " [--types cpu,gpu,...] --serve <port>";
+
+    public static void main(String[] args) {
+        ProbeTimings.dumpOnExitIfRequested();
+        int exitCode = run(args);
+        if (exitCode != 0) {
+            System.exit(exitCode);
+        }
+    }
+
+    /**
+     * Parses the arguments, collects the requested hardware and writes
+     * it to standard output.
+     *
+     * @param args The command line arguments. {@link #HEADLESS_ARG} is ignored.
+     * @return The exit code, 0 if successful
+     */
+    public static int run(String[] args) {
+        OutputFormat format = OutputFormat.JSON;
+        EnumSet<NodeInfo.HardwareType> types = EnumSet.allOf(NodeInfo.HardwareType.class);
+        Path fleetSource = null;
+        int servePort = -1;
+        Path diffFile = null;
+
+        /* =============== *
+         * Parse Arguments *
+         * =============== */
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case HEADLESS_ARG -> { }
+                case "--format" -> {
+                    if (i + 1 >= args.length) {
+                        return usageError("Missing value for --format");
+                    }
+                    format = OutputFormat.stringToValue(args[++i]);
+                    if (format == null) {
+                        return usageError("Unknown format: " + args[i]);
+                    }
+                }
+                case "--types" -> {
+                    if (i + 1 >= args.length) {
+                        return usageError("Missing value for --types");
+                    }
+                    types.clear();
+                    for (String name : args[++i].split(",")) {
+                        NodeInfo.HardwareType type = NodeInfo.HardwareType.stringToValue(name.trim());
+                        if (type == null) {
+                            return usageError("Unknown hardware type: " + name.trim());
+                        }
+                        types.add(type);
+                    }
+                }
+                case "--fleet" -> {
+                    if (i + 1 >= args.length) {
+                        return usageError("Missing value for --fleet");
+                    }
+                    fleetSource = Path.of(args[++i]);
+                }
+                case "--diff" -> {
+                    if (i + 1 >= args.length) {
+                        return usageError("Missing value for --diff");
+                    }
+                    diffFile = Path.of(args[++i]);
+                }
+                case "--serve" -> {
+                    if (i + 1 >= args.length) {
+                        return usageError("Missing value for --serve");
+                    }
+                    try {
+                        servePort = Integer.parseInt(args[++i]);
+                    }
+                    catch (NumberFormatException e) {
+                        return usageError("Invalid port: " + args[i]);
+                    }
+                }
+                default -> {
+                    return usageError("Unknown argument: " + args[i]);
+                }
+            }
+        }
+
+        if (fleetSource != null) {
+            if (format != OutputFormat.JSON) {
+                return usageError("--fleet can only be written as JSON");
+            }
+            return runFleet(fleetSource);
+        }
+
+        /* ====================== *
+         * Collect and Write Data *
+         * ====================== */
+
+        // Read before collecting, so a bad file doesn't waste a collection
+        HardwareSnapshot older = null;
+        if (diffFile != null) {
+            try {
+                older = HardwareSnapshot.read(diffFile);
+            }
+            catch (IOException e) {
+                System.err.println("Unable to read the snapshot to compare with: " + e.getMessage());
+                return EXIT_BAD_ARGS;
+            }
+        }
+
+        HardwareSnapshot snapshot;
+        try {
+            snapshot = HardwareCollector.takeSnapshot(types);
+        }
+        catch (CompletionException e) {
+            System.err.println("Unable to collect the hardware information: " + e.getCause());
+            return EXIT_PROBE_FAILED;
+        }
+
+        if (servePort >= 0) {
+            return serve(servePort);
+        }
+
+        // Don't close the writer, since that would close standard output
+        try {
+            Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+            if (older != null) {
+                List<HardwareChange> changes = HardwareDiff.diff(older, snapshot);
+                if (format == OutputFormat.JSON) {
+                    writeChangesJson(changes, out);
+                }
+                else {
+                    writeChangesCsv(changes, out);
+                }
+            }
+            else if (format == OutputFormat.JSON) {
+                writeJson(snapshot, out);
+            }
+            else {
+                writeCsv(snapshot, out);
+            }
+            out.flush();
+        }
+        catch (IOException e) {
+            System.err.println("Unable to write the hardware information: " + e.getMessage());
+            return EXIT_PROBE_FAILED;
+        }
+        return 0;
+    }
+
+    /**
+     * Aggregates the snapshots from many hosts and writes the index to standard output.
+     *
+     * @param source A directory of snapshot files, or a JSON lines file
+     * @return The exit code, 0 if successful
+     */
+    private static int runFleet(Path source) {
+        try {
+            FleetIndex index = FleetAggregator.aggregate(source);
+            Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+            JsonGenerator generator = new JsonFactory().createGenerator(out);
+            index.writeJson(generator);
+            generator.flush();
+            out.write(System.lineSeparator());
+            out.flush();
+        }
+        catch (IOException e) {
+            System.err.println("Unable to aggregate the snapshots: " + e.getMessage());
+            return EXIT_PROBE_FAILED;
+        }
+        return 0;
+    }
+
+    /**
+     * Starts a metrics server for the current snapshot. The server's threads keep
+     * the process running after this returns.
+     *
+     * @param port The port to listen on
+     * @return The exit code, 0 if the server started
+     */
+    private static int serve(int port) {
+        try {
+            MetricsServer server = new MetricsServer(port);
+            server.start();
+            System.err.println("Serving /snapshot and /metrics on http://localhost:" + server.getPort());
+        }
+        catch (IOException e) {
+            System.err.println("Unable to start the metrics server: " + e.getMessage());
+            return EXIT_PROBE_FAILED;
+        }
+        return 0;
+    }
+
+    private static int usageError(String message) {
+        System.err.println(message);
+        System.err.println(USAGE);
+        return EXIT_BAD_ARGS;
+    }
+
+    /**
+     * Streams a snapshot as a single JSON object.
+     *
+     * @param snapshot The snapshot to write
+     * @param out Where to write the JSON
+     * @throws IOException If unable to write
+     */
+    private static void writeJson(HardwareSnapshot snapshot, Writer out) throws IOException {
+        JsonGenerator generator = new JsonFactory().createGenerator(out);
+        snapshot.writeJson(generator);
+        generator.flush();
+        out.write(System.lineSeparator());
+    }
+
+    /**
+     * Streams a snapshot as CSV, with one row per hardware entry.
+     *
+     * @param snapshot The snapshot to write
+     * @param out Where to write the CSV
+     * @throws IOException If unable to write
+     */
+    private static void writeCsv(HardwareSnapshot snapshot, Writer out) throws IOException {
+        out.write("type,index,content");
+        out.write(System.lineSeparator());
+        for (NodeInfo.HardwareType type : snapshot.getCollectedTypes()) {
+            List<String> values = snapshot.getValues(type);
+            for (int i = 0; i < values.size(); i++) {
+                out.write(type.getValueAsString());
+                out.write(',');
+                out.write(Integer.toString(i));
+                out.write(',');
+                out.write(escapeCsv(values.get(i)));
+                out.write(System.lineSeparator());
+            }
+        }
+    }
+
+    /**
+     * Streams changes as a JSON array, with one object per change.
+     *
+     * @param changes The changes to write
+     * @param out Where to write the JSON
+     * @throws IOException If unable to write
+     */
+    private static void writeChangesJson(List<HardwareChange> changes, Writer out) throws IOException {
+        JsonGenerator generator = new JsonFactory().createGenerator(out);
+        generator.writeStartArray();
+        for (HardwareChange change : changes) {
+            generator.writeStartObject();
+            generator.writeStringField("kind", change.kind().getValueAsString());
+            generator.writeStringField("type", change.type().getValueAsString());
+            generator.writeNumberField("index", change.index());
+            generator.writeStringField("old", change.oldContent());
+            generator.writeStringField("new", change.newContent());
+            generator.writeStringField("identity", change.identity());
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+        generator.flush();
+        out.write(System.lineSeparator());
+    }
+
+    /**
+     * Streams changes as CSV, with one row per change.
+     *
+     * @param changes The changes to write
+     * @param out Where to write the CSV
+     * @throws IOException If unable to write
+     */
+    private static void writeChangesCsv(List<HardwareChange> changes, Writer out) throws IOException {
+        out.write("kind,type,index,old,new,identity");
+        out.write(System.lineSeparator());
+        for (HardwareChange change : changes) {
+            out.write(change.kind().getValueAsString());
+            out.write(',');
+            out.write(change.type().getValueAsString());
+            out.write(',');
+            out.write(Integer.toString(change.index()));
+            out.write(',');
+            out.write(escapeCsv(change.oldContent() == null ? "" : change.oldContent()));
+            out.write(',');
+            out.write(escapeCsv(change.newContent() == null ? "" : change.newContent()));
+            out.write(',');
+            out.write(escapeCsv(change.identity() == null ? "" : change.identity()));
+            out.write(System.lineSeparator());
+        }
+    }
+
+    /**
+     * Quotes a CSV field if it contains a comma, quote or line break.
+     *
+     * @param field The field to escape
+     * @return The escaped field
+     */
+    private static String escapeCsv(String field) {
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return '"' + field.replace("\"", "\"\"") + '"';
+            }
+        }
+        return field;
+    }
+
+    // Enums
+    private enum OutputFormat {
+        JSON,
+        CSV;
+
+        public static OutputFormat stringToValue(String format) {
+            return switch (format.toUpperCase()) {
+                case "JSON" -> JSON;
+                case "CSV" -> CSV;
+                default -> null;
+            };
+        }
+    }
+
+}
@@ -0,0 +1,27 @@
+package belleisle.amiah.hardwarespecget;
+
+import javafx.application.Application;
+
+import java.util.Arrays;
+
+/**
+ * The main class of the application, which starts either the GUI or the
+ * headless {@link InventoryCli}.
+ * <p>
+ * It doesn't extend {@link Application}, since the Java launcher starts the
+ * JavaFX toolkit before calling the main method of a class that does. That
+ * needs a display, which headless hosts don't have.
+ * </p>
+ */
+public abstract class Launcher {
+
+    public static void main(String[] args) {
+        if (Arrays.asList(args).contains(InventoryCli.HEADLESS_ARG)) {
+            InventoryCli.main(args);
+            return;
+        }
+        ProbeTimings.dumpOnExitIfRequested();
+        Application.launch(HardwareSpecApplication.class, args);
+    }
+
+}
@@ -0,0 +1,507 @@
+package belleisle.amiah.hardwarespecget;
+
+import oshi.hardware.CentralProcessor;
+import oshi.hardware.GlobalMemory;
+import oshi.hardware.HWDiskStore;
+import oshi.hardware.NetworkIF;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Polls the hardware values that change while the application runs, and keeps
+ * a short history of them. Per-core, per-disk and per-interface readings are
+ * kept by its {@link CpuTelemetry}, {@link DiskTelemetry} and {@link NetworkTelemetry}.
+ * <p>
+ * Each value is kept in a fixed-size primitive ring buffer, allocated once when
+ * the sampler is created, so taking a sample creates no objects of its own and
+ * old samples are overwritten rather than collected. The UI and exporters read
+ * the latest sample or copy the history out, and never probe the hardware.
+ * </p>
+ * <p>
+ * The interval and the number of samples kept can be set with the
+ * {@value #INTERVAL_PROPERTY} and {@value #CAPACITY_PROPERTY} system properties.
+ * Network interfaces can be sampled less often with {@value #NETWORK_INTERVAL_PROPERTY}.
+ * </p>
+ * <p>
+ * Memory and the system CPU load are always sampled. The per-core, per-disk and
+ * per-interface readings are only sampled while one of their nodes is shown, as
+ * set by {@link #setShown(NodeInfo.HardwareType, boolean)}, or while an exporter
+ * such as the {@link MetricsServer} is running.
+ * </p>
+ * <p>
+ * The sampler starts with no disks or network interfaces, since enumerating them
+ * is slow. The DISK and NETWORK probes hand theirs over to the shared sampler as
+ * they find them, or {@link #setDisks(List)} and {@link #setNetworkIFs(List)}
+ * can be called directly.
+ * </p>
+ */
+public class LiveSampler {
+
+    public static final String INTERVAL_PROPERTY = "hardwarespecget.sampler.intervalMillis";
+    public static final String CAPACITY_PROPERTY = "hardwarespecget.sampler.capacity";
+    // Network interfaces are sampled at most this often, which can be slower than other values
+    public static final String NETWORK_INTERVAL_PROPERTY = "hardwarespecget.sampler.networkIntervalMillis";
+    private static final long DEFAULT_INTERVAL = 1000;
+    private static final int DEFAULT_CAPACITY = 120;
+    // Milliseconds the first CPU load measurement waits for
+    private static final long CPU_LOAD_DELAY = 100;
+
+    // Completed once the shared sampler has published its first sample
+    private static CompletableFuture<LiveSampler> sharedFuture = null;
+    // The shared sampler once it has been created, and the latest disks and interfaces
+    // handed over for it. Guarded by the class lock.
+    private static LiveSampler shared = null;
+    private static List<HWDiskStore> sharedDisks = List.of();
+    private static List<NetworkIF> sharedNetworkIFs = List.of();
+
+    private final ScheduledExecutorService scheduler;
+    // Called on the sampler thread after every sample
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private final long interval;
+    private final long networkInterval;
+
+    // Hardware handles, looked up once so sampling doesn't enumerate anything
+    private final CentralProcessor processor;
+    private final GlobalMemory memory;
+    private final long totalMemory;
+    private final CpuTelemetry cpuTelemetry;
+    private final DiskTelemetry diskTelemetry;
+    private final NetworkTelemetry networkTelemetry;
+    // Time of the last network sample. Only accessed from the sampler thread.
+    private long lastNetworkSample = 0;
+    // CPU ticks at the last sample. Only accessed from the sampler thread.
+    private long[] previousCpuTicks = null;
+    // Whether a node of each type is shown, and the number of running exporters
+    private volatile boolean cpuCoresShown = false;
+    private volatile boolean disksShown = false;
+    private volatile boolean networkShown = false;
+    private final AtomicInteger exporters = new AtomicInteger();
+
+    // Ring buffers, all written at the same slot. They hold one slot more than the
+    // capacity, so the slot being written is never one that readers can copy.
+    private final int capacity;
+    private final int slots;
+    private final long[] timestamps;
+    private final long[] availableMemory;
+    private final double[] cpuLoad;
+    private final long[] diskReadBytes;
+    private final long[] diskWriteBytes;
+    // Total number of samples taken. Written after the slot, so readers never see a slot being filled.
+    private volatile long sampleCount = 0;
+
+    /**
+     * Creates a sampler using the intervals and capacity set by system properties.
+     * It doesn't sample until {@link #start()} is called.
+     */
+    public LiveSampler() {
+        this(newScheduler());
+    }
+
+    /**
+     * @param interval The number of milliseconds between samples
+     * @param capacity The number of samples kept
+     */
+    public LiveSampler(long interval, int capacity) {
+        this(interval, capacity, newScheduler());
+    }
+
+    private LiveSampler(ScheduledExecutorService scheduler) {
+        this(Long.getLong(INTERVAL_PROPERTY, DEFAULT_INTERVAL), Integer.getInteger(CAPACITY_PROPERTY, DEFAULT_CAPACITY), scheduler);
+    }
+
+    private LiveSampler(long interval, int capacity, ScheduledExecutorService scheduler) {
+        if (interval <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("Interval and capacity must be positive");
+        }
+        this.scheduler = scheduler;
+        this.interval = interval;
+        networkInterval = Long.getLong(NETWORK_INTERVAL_PROPERTY, interval);
+        this.capacity = capacity;
+        slots = capacity + 1;
+        timestamps = new long[slots];
+        availableMemory = new long[slots];
+        cpuLoad = new double[slots];
+        diskReadBytes = new long[slots];
+        diskWriteBytes = new long[slots];
+
+        processor = HardwareCollector.getHardware().getProcessor();
+        memory = HardwareCollector.getHardware().getMemory();
+        totalMemory = memory.getTotal();
+        cpuTelemetry = new CpuTelemetry(processor);
+        diskTelemetry = new DiskTelemetry(List.of());
+        networkTelemetry = new NetworkTelemetry(List.of());
+    }
+
+    private static ScheduledExecutorService newScheduler() {
+        return Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "live-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Gets the sampler shared by the UI and exporters, starting it on first use.
+     * It is created and takes its first sample on its own thread, so this
+     * returns right away.
+     *
+     * @return A future completed with the shared sampler once its first sample
+     *         has been published
+     */
+    public static synchronized CompletableFuture<LiveSampler> getSharedAsync() {
+        if (sharedFuture == null) {
+            ScheduledExecutorService scheduler = newScheduler();
+            sharedFuture = CompletableFuture.supplyAsync(() -> {
+                LiveSampler sampler;
+                try {
+                    sampler = new LiveSampler(scheduler);
+                }
+                catch (RuntimeException e) {
+                    scheduler.shutdown();
+                    throw e;
+                }
+                synchronized (LiveSampler.class) {
+                    shared = sampler;
+                    sampler.setDisks(sharedDisks);
+                    sampler.setNetworkIFs(sharedNetworkIFs);
+                }
+                sampler.start();
+                return sampler;
+            }, scheduler);
+        }
+        return sharedFuture;
+    }
+
+    /**
+     * Gets the sampler shared by the UI and exporters, starting it on first use
+     * and waiting for its first sample, so the latest values are always available.
+     * It shouldn't be called on the JavaFX application thread, which should use
+     * {@link #getSharedAsync()} instead.
+     *
+     * @return The shared sampler
+     */
+    public static LiveSampler getShared() {
+        return getSharedAsync().join();
+    }
+
+    /**
+     * Passes newly enumerated disks to the shared sampler. If it hasn't been
+     * created yet, it picks them up when it is.
+     *
+     * @param stores The disks, in the same order as the snapshot's disks
+     */
+    static synchronized void updateSharedDisks(List<HWDiskStore> stores) {
+        sharedDisks = stores;
+        if (shared != null) {
+            shared.setDisks(stores);
+        }
+    }
+
+    /**
+     * Passes newly enumerated network interfaces to the shared sampler. If it
+     * hasn't been created yet, it picks them up when it is.
+     *
+     * @param networkIFs The interfaces, in the same order as the snapshot's interfaces
+     */
+    static synchronized void updateSharedNetworkIFs(List<NetworkIF> networkIFs) {
+        sharedNetworkIFs = networkIFs;
+        if (shared != null) {
+            shared.setNetworkIFs(networkIFs);
+        }
+    }
+
+    /**
+     * @param stores The disks to sample, in the same order as the snapshot's disks
+     */
+    public void setDisks(List<HWDiskStore> stores) {
+        diskTelemetry.setDisks(stores);
+    }
+
+    /**
+     * @param networkIFs The interfaces to sample, in the same order as the snapshot's interfaces
+     */
+    public void setNetworkIFs(List<NetworkIF> networkIFs) {
+        networkTelemetry.setInterfaces(networkIFs);
+    }
+
+    /**
+     * Takes the first sample on the calling thread, then samples every
+     * interval in the background. The shared sampler is started on its own thread.
+     */
+    public void start() {
+        sample();
+        scheduler.scheduleAtFixedRate(this::sampleAndNotify, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops sampling. The samples taken so far can still be read.
+     */
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Sets whether a node of a type is shown, so that its readings are sampled.
+     *
+     * @param type {@link NodeInfo.HardwareType#CPU_CORE}, {@link NodeInfo.HardwareType#DISK}
+     *             or {@link NodeInfo.HardwareType#NETWORK}
+     * @param shown true if a node of the type is shown
+     * @throws IllegalArgumentException If the type has no readings of its own
+     */
+    public void setShown(NodeInfo.HardwareType type, boolean shown) {
+        switch (type) {
+            case CPU_CORE -> cpuCoresShown = shown;
+            case DISK -> disksShown = shown;
+            case NETWORK -> networkShown = shown;
+            default -> throw new IllegalArgumentException(type + " has no readings of its own");
+        }
+    }
+
+    /**
+     * Samples every reading, whether or not its nodes are shown, until
+     * {@link #removeExporter()} is called.
+     */
+    public void addExporter() {
+        exporters.incrementAndGet();
+    }
+
+    /**
+     * Stops sampling readings for an exporter added with {@link #addExporter()}.
+     */
+    public void removeExporter() {
+        exporters.decrementAndGet();
+    }
+
+    /**
+     * @param listener Called on the sampler thread after every sample. It should
+     *                 return quickly, since the next sample waits for it.
+     */
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * @param listener A listener previously passed to {@link #addListener(Runnable)}
+     */
+    public void removeListener(Runnable listener) {
+        listeners.remove(listener);
+    }
+
+    /* ======== *
+     * Sampling *
+     * ======== */
+
+    private void sampleAndNotify() {
+        try {
+            sample();
+        }
+        catch (RuntimeException e) {
+            // Skip this sample rather than stopping the schedule
+            return;
+        }
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+    }
+
+    // Only called from one thread at a time: start, then the sampler thread
+    private void sample() {
+        long count = sampleCount;
+        int slot = (int) (count % slots);
+
+        timestamps[slot] = System.currentTimeMillis();
+        availableMemory[slot] = memory.getAvailable();
+        if (previousCpuTicks == null) {
+            cpuLoad[slot] = processor.getSystemCpuLoad(CPU_LOAD_DELAY);
+        }
+        else {
+            cpuLoad[slot] = processor.getSystemCpuLoadBetweenTicks(previousCpuTicks);
+        }
+        previousCpuTicks = processor.getSystemCpuLoadTicks();
+
+        boolean exporting = exporters.get() > 0;
+        if (exporting || cpuCoresShown) {
+            cpuTelemetry.sample();
+        }
+        // The totals stay at the last disk sample while disks aren't sampled
+        if (exporting || disksShown) {
+            diskTelemetry.sample();
+        }
+        diskReadBytes[slot] = diskTelemetry.getTotalReadBytes();
+        diskWriteBytes[slot] = diskTelemetry.getTotalWriteBytes();
+        // Compared with a little slack, so scheduling jitter doesn't skip every other sample
+        if ((exporting || networkShown) && timestamps[slot] - lastNetworkSample >= networkInterval - interval / 10) {
+            networkTelemetry.sample();
+            lastNetworkSample = timestamps[slot];
+        }
+
+        sampleCount = count + 1;
+    }
+
+    /* ======= *
+     * Reading *
+     * ======= */
+
+    /**
+     * @return The number of samples taken since the sampler started
+     */
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * @return The number of milliseconds between samples
+     */
+    public long getInterval() {
+        return interval;
+    }
+
+    /**
+     * @return The maximum number of samples kept
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return The total physical memory in bytes. It doesn't change, so it isn't sampled.
+     */
+    public long getTotalMemory() {
+        return totalMemory;
+    }
+
+    /**
+     * @return The per-core readings, updated with every sample while they are sampled
+     */
+    public CpuTelemetry getCpuTelemetry() {
+        return cpuTelemetry;
+    }
+
+    /**
+     * @return The per-disk rates, updated with every sample while they are sampled
+     */
+    public DiskTelemetry getDiskTelemetry() {
+        return diskTelemetry;
+    }
+
+    /**
+     * @return The per-interface network rates, updated at the network interval while they are sampled
+     */
+    public NetworkTelemetry getNetworkTelemetry() {
+        return networkTelemetry;
+    }
+
+    /**
+     * @return The time of the latest sample, in milliseconds since the epoch, or 0 if none
+     */
+    public long getLatestTimestamp() {
+        return latest(timestamps);
+    }
+
+    /**
+     * @return The latest available physical memory in bytes, or 0 if nothing has been sampled
+     */
+    public long getLatestAvailableMemory() {
+        return latest(availableMemory);
+    }
+
+    /**
+     * @return The latest system CPU load between 0 and 1, or 0 if nothing has been sampled
+     */
+    public double getLatestCpuLoad() {
+        long count = sampleCount;
+        return count == 0 ? 0 : cpuLoad[(int) ((count - 1) % slots)];
+    }
+
+    /**
+     * @return The bytes read from every disk since boot, as of the latest sample
+     */
+    public long getLatestDiskReadBytes() {
+        return latest(diskReadBytes);
+    }
+
+    /**
+     * @return The bytes written to every disk since boot, as of the latest sample
+     */
+    public long getLatestDiskWriteBytes() {
+        return latest(diskWriteBytes);
+    }
+
+    /**
+     * Copies the most recent sample times into an array, oldest first.
+     *
+     * @param dest The array to copy into. At most its length samples are copied.
+     * @return The number of samples copied
+     */
+    public int copyTimestamps(long[] dest) {
+        return copyHistory(timestamps, dest);
+    }
+
+    /**
+     * Copies the most recent available memory samples into an array, oldest first.
+     *
+     * @param dest The array to copy into. At most its length samples are copied.
+     * @return The number of samples copied
+     */
+    public int copyAvailableMemory(long[] dest) {
+        return copyHistory(availableMemory, dest);
+    }
+
+    /**
+     * Copies the most recent CPU load samples into an array, oldest first.
+     *
+     * @param dest The array to copy into. At most its length samples are copied.
+     * @return The number of samples copied
+     */
+    public int copyCpuLoad(double[] dest) {
+        long count = sampleCount;
+        int n = (int) Math.min(Math.min(count, capacity), dest.length);
+        for (int i = 0; i < n; i++) {
+            dest[i] = cpuLoad[(int) ((count - n + i) % slots)];
+        }
+        return n;
+    }
+
+    /**
+     * Copies the most recent disk read totals into an array, oldest first.
+     *
+     * @param dest The array to copy into. At most its length samples are copied.
+     * @return The number of samples copied
+     */
+    public int copyDiskReadBytes(long[] dest) {
+        return copyHistory(diskReadBytes, dest);
+    }
+
+    /**
+     * Copies the most recent disk write totals into an array, oldest first.
+     *
+     * @param dest The array to copy into. At most its length samples are copied.
+     * @return The number of samples copied
+     */
+    public int copyDiskWriteBytes(long[] dest) {
+        return copyHistory(diskWriteBytes, dest);
+    }
+
+    private long latest(long[] ring) {
+        long count = sampleCount;
+        return count == 0 ? 0 : ring[(int) ((count - 1) % slots)];
+    }
+
+    // Only reads slots published by sampleCount, so a sample taken during the copy
+    // writes to the spare slot instead of one being copied
+    private int copyHistory(long[] ring, long[] dest) {
+        long count = sampleCount;
+        int n = (int) Math.min(Math.min(count, capacity), dest.length);
+        for (int i = 0; i < n; i++) {
+            dest[i] = ring[(int) ((count - n + i) % slots)];
+        }
+        return n;
+    }
+
+}
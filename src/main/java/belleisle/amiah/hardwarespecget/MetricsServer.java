@@ -0,0 +1,318 @@
+package belleisle.amiah.hardwarespecget;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * An embedded HTTP server that lets monitoring scrape the collected hardware.
+ * <p>
+ * {@code /snapshot} serves the current snapshot as JSON, and {@code /metrics}
+ * serves the numeric values in the Prometheus text format. Both responses are
+ * rendered to bytes ahead of time: the snapshot whenever it is replaced, and the
+ * metrics every refresh interval. A scrape therefore only copies an existing
+ * array, and never probes the hardware.
+ * </p>
+ * <p>
+ * The metrics also count every {@link HardwareChange} found since the server
+ * started, so alerts can fire when a disk disappears or memory changes.
+ * </p>
+ * <p>
+ * The server only listens on the loopback address. The refresh interval can be
+ * set with the {@value #INTERVAL_PROPERTY} system property, in milliseconds.
+ * </p>
+ */
+public class MetricsServer {
+
+    // Set to a port number to start the server alongside the GUI
+    public static final String PORT_PROPERTY = "hardwarespecget.metrics.port";
+    public static final String INTERVAL_PROPERTY = "hardwarespecget.metrics.intervalMillis";
+    private static final long DEFAULT_INTERVAL = 5000;
+
+    private static final String JSON_TYPE = "application/json; charset=utf-8";
+    private static final String PROMETHEUS_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final NodeInfo.HardwareType[] TYPES = NodeInfo.HardwareType.values();
+    private static final HardwareChange.Kind[] KINDS = HardwareChange.Kind.values();
+
+    private final HttpServer server;
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "metrics-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Supplier<HardwareMetrics> metricsSupplier;
+    private final Consumer<HardwareSnapshot> snapshotListener = this::renderSnapshot;
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final HardwareChangeDetector changeDetector = new HardwareChangeDetector();
+    // Indexed by type ordinal * number of kinds + kind ordinal
+    private final AtomicLongArray changeCounts = new AtomicLongArray(TYPES.length * KINDS.length);
+
+    // Pre-rendered responses, replaced as a whole so scrapes never see a partial render
+    private volatile byte[] snapshotBytes = new byte[0];
+    private volatile byte[] metricsBytes = new byte[0];
+
+    /**
+     * Creates a server on the loopback address. It doesn't accept
+     * connections until {@link #start()} is called.
+     *
+     * @param port The port to listen on, or 0 to pick any free port
+     * @throws IOException If unable to bind to the port
+     */
+    public MetricsServer(int port) throws IOException {
+        this(port, HardwareCollector::takeMetrics);
+    }
+
+    /**
+     * @param port The port to listen on, or 0 to pick any free port
+     * @param metricsSupplier Reads the metrics on every refresh
+     * @throws IOException If unable to bind to the port
+     */
+    MetricsServer(int port, Supplier<HardwareMetrics> metricsSupplier) throws IOException {
+        this.metricsSupplier = metricsSupplier;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/snapshot", exchange -> respond(exchange, snapshotBytes, JSON_TYPE));
+        server.createContext("/metrics", exchange -> respond(exchange, metricsBytes, PROMETHEUS_TYPE));
+    }
+
+    /**
+     * Starts a server if the {@value #PORT_PROPERTY} system property is set.
+     *
+     * @return The started server, or {@code null} if the property isn't set
+     * @throws IOException If unable to bind to the port
+     * @throws NumberFormatException If the property isn't a number
+     */
+    public static MetricsServer startFromProperty() throws IOException {
+        String port = System.getProperty(PORT_PROPERTY);
+        if (port == null || port.isBlank()) {
+            return null;
+        }
+        MetricsServer metricsServer = new MetricsServer(Integer.parseInt(port.trim()));
+        metricsServer.start();
+        return metricsServer;
+    }
+
+    /**
+     * Renders the current responses, then starts accepting connections and
+     * refreshing the metrics in the background.
+     */
+    public void start() {
+        HardwareCollector.addSnapshotListener(snapshotListener);
+        HardwareCollector.peekSnapshot().ifPresent(this::renderSnapshot);
+        changeDetector.addListener(change -> changeCounts.incrementAndGet(
+                change.type().ordinal() * KINDS.length + change.kind().ordinal()));
+        changeDetector.start();
+
+        // Scrapes read every reading, so they're sampled whether or not their nodes are shown
+        // Added once the shared sampler has started, so starting the server doesn't wait for it
+        LiveSampler.getSharedAsync().thenAccept(LiveSampler::addExporter);
+        long interval = Long.getLong(INTERVAL_PROPERTY, DEFAULT_INTERVAL);
+        refresher.scheduleWithFixedDelay(this::renderMetrics, 0, interval, TimeUnit.MILLISECONDS);
+        server.start();
+    }
+
+    /**
+     * Stops accepting connections and stops refreshing.
+     */
+    public void close() {
+        HardwareCollector.removeSnapshotListener(snapshotListener);
+        changeDetector.stop();
+        LiveSampler.getSharedAsync().thenAccept(LiveSampler::removeExporter);
+        refresher.shutdownNow();
+        server.stop(0);
+    }
+
+    /**
+     * @return The port the server is listening on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // Writes a pre-rendered response. Responds 503 until the first render has finished.
+    private static void respond(HttpExchange exchange, byte[] body, String contentType) throws IOException {
+        try (exchange) {
+            String method = exchange.getRequestMethod();
+            if (!method.equals("GET") && !method.equals("HEAD")) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            if (body.length == 0) {
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+            if (method.equals("HEAD")) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    /* ========= *
+     * Rendering *
+     * ========= */
+
+    // Called whenever the snapshot is replaced
+    private void renderSnapshot(HardwareSnapshot snapshot) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+        try (JsonGenerator generator = jsonFactory.createGenerator(out)) {
+            snapshot.writeJson(generator);
+        }
+        catch (IOException e) {
+            // Writing to memory can't fail, keep serving the previous snapshot
+            return;
+        }
+        snapshotBytes = out.toByteArray();
+    }
+
+    // Runs on the refresh thread
+    private void renderMetrics() {
+        try {
+            StringBuilder sb = renderPrometheus(metricsSupplier.get());
+            renderCores(sb, LiveSampler.getShared().getCpuTelemetry());
+            renderDiskRates(sb, LiveSampler.getShared().getDiskTelemetry());
+            renderNetworkRates(sb, LiveSampler.getShared().getNetworkTelemetry());
+            renderChangeCounts(sb);
+            metricsBytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+        }
+        catch (RuntimeException e) {
+            // Keep serving the previous metrics, and try again next refresh
+        }
+    }
+
+    /**
+     * Formats metrics in the Prometheus text exposition format.
+     *
+     * @param metrics The metrics to format
+     * @return The formatted metrics
+     */
+    static StringBuilder renderPrometheus(HardwareMetrics metrics) {
+        StringBuilder sb = new StringBuilder(512);
+        gauge(sb, "hardwarespecget_memory_total_bytes", "Total physical memory.");
+        sb.append("hardwarespecget_memory_total_bytes ").append(metrics.memoryTotal()).append('\n');
+        gauge(sb, "hardwarespecget_memory_available_bytes", "Available physical memory.");
+        sb.append("hardwarespecget_memory_available_bytes ").append(metrics.memoryAvailable()).append('\n');
+
+        gauge(sb, "hardwarespecget_disk_size_bytes", "Size of each disk.");
+        List<HardwareMetrics.Disk> disks = metrics.disks();
+        for (int i = 0; i < disks.size(); i++) {
+            sb.append("hardwarespecget_disk_size_bytes{index=\"").append(i)
+                    .append("\",model=\"").append(escapeLabel(disks.get(i).name()))
+                    .append("\"} ").append(disks.get(i).size()).append('\n');
+        }
+
+        gauge(sb, "hardwarespecget_cpu_load_ratio", "System CPU load between 0 and 1.");
+        sb.append("hardwarespecget_cpu_load_ratio ")
+                .append(String.format(Locale.ROOT, "%.4f", metrics.cpuLoad())).append('\n');
+        return sb;
+    }
+
+    // Reads the latest per-core sample, rather than measuring again. The load is
+    // left out until it has been measured, rather than reported as 0.
+    private static void renderCores(StringBuilder sb, CpuTelemetry telemetry) {
+        gauge(sb, "hardwarespecget_cpu_core_load_ratio", "Load of each logical processor between 0 and 1.");
+        for (int i = 0; i < telemetry.getCoreCount() && telemetry.isMeasured(); i++) {
+            sb.append("hardwarespecget_cpu_core_load_ratio{core=\"").append(i).append("\"} ")
+                    .append(String.format(Locale.ROOT, "%.4f", telemetry.getLoad(i))).append('\n');
+        }
+        gauge(sb, "hardwarespecget_cpu_core_frequency_hertz", "Current frequency of each logical processor.");
+        for (int i = 0; i < telemetry.getCoreCount(); i++) {
+            if (telemetry.getFrequency(i) > 0) {
+                sb.append("hardwarespecget_cpu_core_frequency_hertz{core=\"").append(i).append("\"} ")
+                        .append(telemetry.getFrequency(i)).append('\n');
+            }
+        }
+    }
+
+    // Reads the rates measured by the latest sample
+    private static void renderDiskRates(StringBuilder sb, DiskTelemetry telemetry) {
+        int count = telemetry.getDiskCount();
+        gauge(sb, "hardwarespecget_disk_read_bytes_per_second", "Bytes read per second from each disk.");
+        for (int i = 0; i < count; i++) {
+            diskSample(sb, "hardwarespecget_disk_read_bytes_per_second", i, telemetry.getReadBytesPerSecond(i));
+        }
+        gauge(sb, "hardwarespecget_disk_write_bytes_per_second", "Bytes written per second to each disk.");
+        for (int i = 0; i < count; i++) {
+            diskSample(sb, "hardwarespecget_disk_write_bytes_per_second", i, telemetry.getWriteBytesPerSecond(i));
+        }
+        gauge(sb, "hardwarespecget_disk_read_iops", "Reads per second from each disk.");
+        for (int i = 0; i < count; i++) {
+            diskSample(sb, "hardwarespecget_disk_read_iops", i, telemetry.getReadIops(i));
+        }
+        gauge(sb, "hardwarespecget_disk_write_iops", "Writes per second to each disk.");
+        for (int i = 0; i < count; i++) {
+            diskSample(sb, "hardwarespecget_disk_write_iops", i, telemetry.getWriteIops(i));
+        }
+    }
+
+    private static void diskSample(StringBuilder sb, String name, int index, double value) {
+        sb.append(name).append("{index=\"").append(index).append("\"} ")
+                .append(String.format(Locale.ROOT, "%.2f", value)).append('\n');
+    }
+
+    // Reads the rates measured by the latest network sample
+    private static void renderNetworkRates(StringBuilder sb, NetworkTelemetry telemetry) {
+        int count = telemetry.getInterfaceCount();
+        gauge(sb, "hardwarespecget_network_receive_bytes_per_second", "Bytes received per second on each interface.");
+        for (int i = 0; i < count; i++) {
+            sb.append("hardwarespecget_network_receive_bytes_per_second{interface=\"")
+                    .append(escapeLabel(telemetry.getName(i))).append("\"} ")
+                    .append(String.format(Locale.ROOT, "%.2f", telemetry.getReceiveBytesPerSecond(i))).append('\n');
+        }
+        gauge(sb, "hardwarespecget_network_transmit_bytes_per_second", "Bytes sent per second on each interface.");
+        for (int i = 0; i < count; i++) {
+            sb.append("hardwarespecget_network_transmit_bytes_per_second{interface=\"")
+                    .append(escapeLabel(telemetry.getName(i))).append("\"} ")
+                    .append(String.format(Locale.ROOT, "%.2f", telemetry.getTransmitBytesPerSecond(i))).append('\n');
+        }
+    }
+
+    // Only counts above zero are written, since most types never change
+    private void renderChangeCounts(StringBuilder sb) {
+        sb.append("# HELP hardwarespecget_hardware_changes_total Hardware added, removed or changed since startup.\n");
+        sb.append("# TYPE hardwarespecget_hardware_changes_total counter\n");
+        for (int i = 0; i < changeCounts.length(); i++) {
+            long count = changeCounts.get(i);
+            if (count == 0) {
+                continue;
+            }
+            sb.append("hardwarespecget_hardware_changes_total{type=\"")
+                    .append(TYPES[i / KINDS.length].getValueAsString())
+                    .append("\",kind=\"").append(KINDS[i % KINDS.length].getValueAsString())
+                    .append("\"} ").append(count).append('\n');
+        }
+    }
+
+    private static void gauge(StringBuilder sb, String name, String help) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(" gauge\n");
+    }
+
+    // Escapes backslashes, quotes and line breaks, as required inside label values
+    private static String escapeLabel(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+}
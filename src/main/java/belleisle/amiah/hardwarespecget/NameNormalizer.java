@@ -0,0 +1,179 @@
+package belleisle.amiah.hardwarespecget;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Normalizes names reported by OSHI into a more readable form.
+ * <p>
+ * Bracket extraction, trademark removal, and title casing are done in a single
+ * scan over the input using a reused buffer. Results are memoized, since the same
+ * CPU, GPU, and disk names are normalized on every refresh.
+ * </p>
+ */
+public abstract class NameNormalizer {
+
+    // Maximum number of names remembered by each cache
+    private static final int CACHE_SIZE = 256;
+
+    private static final BoundedCache BEAUTIFIED = new BoundedCache(CACHE_SIZE);
+    private static final BoundedCache TITLED = new BoundedCache(CACHE_SIZE);
+
+    // Probes run concurrently, so each thread gets its own buffer
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(64));
+
+    /**
+     * Extracts the text from the innermost set of square brackets, then
+     * removes "(R)" and "(TM)" from it.
+     *
+     * @param name The text to beautify
+     * @return Beautified text
+     */
+    public static String beautify(String name) {
+        String result = BEAUTIFIED.get(name);
+        if (result == null) {
+            result = normalize(name, true, false);
+            BEAUTIFIED.put(name, result);
+        }
+        return result;
+    }
+
+    /**
+     * Capitalizes the first letter and each letter after a space,
+     * and makes all other letters lowercase.
+     *
+     * @param text The text to turn into a title
+     * @return The text in title format
+     */
+    public static String toTitle(String text) {
+        String result = TITLED.get(text);
+        if (result == null) {
+            result = normalize(text, false, true);
+            TITLED.put(text, result);
+        }
+        return result;
+    }
+
+    /**
+     * Normalizes text without using the cache.
+     *
+     * @param text The text to normalize
+     * @param beautify Whether to extract from brackets and remove trademarks
+     * @param title Whether to convert the text to title format
+     * @return The normalized text
+     */
+    static String normalize(String text, boolean beautify, boolean title) {
+        int begin = 0;
+        int end = text.length();
+
+        // Narrow down to the innermost set of properly closed square brackets
+        if (beautify) {
+            while (true) {
+                int open = indexOf(text, '[', begin, end);
+                int close = lastIndexOf(text, ']', begin, end);
+                if (open == -1 || close == -1 || open >= close) {
+                    break;
+                }
+                begin = open + 1;
+                end = close;
+            }
+        }
+
+        StringBuilder sb = BUFFER.get();
+        sb.setLength(0);
+        // The first letter of a title is capitalized
+        boolean capitalizeNext = true;
+        // Start of the run of characters that haven't been appended yet
+        int runStart = begin;
+        // Position of the next trademark symbol to skip over, or end if there are none
+        int nextTrademark = beautify ? findTrademark(text, begin, end) : end;
+
+        while (runStart < end) {
+            // Append everything up to the next trademark symbol in one go
+            if (title) {
+                for (int i = runStart; i < nextTrademark; i++) {
+                    char c = text.charAt(i);
+                    c = capitalizeNext ? Character.toUpperCase(c) : Character.toLowerCase(c);
+                    capitalizeNext = c == ' ';
+                    sb.append(c);
+                }
+            }
+            else if (runStart == begin && nextTrademark == end) {
+                // Nothing needs to be removed, so the substring can be returned as is
+                return text.substring(begin, end);
+            }
+            else {
+                sb.append(text, runStart, nextTrademark);
+            }
+
+            if (nextTrademark == end) {
+                break;
+            }
+            // Skip over the symbol, then look for the next one
+            runStart = nextTrademark + (text.startsWith("(R)", nextTrademark) ? 3 : 4);
+            nextTrademark = findTrademark(text, runStart, end);
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Finds the next "(R)" or "(TM)" in text.
+     *
+     * @param text The text to search
+     * @param begin Index to start searching from (inclusive)
+     * @param end Index to stop searching at (exclusive)
+     * @return The index of the symbol, or end if there are none
+     */
+    private static int findTrademark(String text, int begin, int end) {
+        int i = text.indexOf('(', begin);
+        while (i != -1 && i < end) {
+            if ((text.startsWith("(R)", i) && i + 3 <= end) || (text.startsWith("(TM)", i) && i + 4 <= end)) {
+                return i;
+            }
+            i = text.indexOf('(', i + 1);
+        }
+        return end;
+    }
+
+    // Finds the first occurrence of c in text between begin (inclusive) and end (exclusive)
+    private static int indexOf(String text, char c, int begin, int end) {
+        int i = text.indexOf(c, begin);
+        return i < end ? i : -1;
+    }
+
+    // Finds the last occurrence of c in text between begin (inclusive) and end (exclusive)
+    private static int lastIndexOf(String text, char c, int begin, int end) {
+        int i = text.lastIndexOf(c, end - 1);
+        return i >= begin ? i : -1;
+    }
+
+    /**
+     * A thread safe cache that forgets the least recently used
+     * entry once it is full.
+     */
+    private static class BoundedCache {
+
+        private final LinkedHashMap<String, String> map;
+
+        BoundedCache(int maxSize) {
+            // Access ordered, so the eldest entry is the least recently used
+            map = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                    return size() > maxSize;
+                }
+            };
+        }
+
+        synchronized String get(String key) {
+            return map.get(key);
+        }
+
+        synchronized void put(String key, String value) {
+            map.put(key, value);
+        }
+
+    }
+
+}
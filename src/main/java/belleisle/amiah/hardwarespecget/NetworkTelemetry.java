@@ -0,0 +1,152 @@
+package belleisle.amiah.hardwarespecget;
+
+import oshi.hardware.NetworkIF;
+
+import java.util.List;
+
+/**
+ * Measures the receive and transmit rates of each network interface.
+ * <p>
+ * Enumerating interfaces is expensive on hosts with many virtual interfaces,
+ * such as docker bridges and veth pairs, so it is only done by the network probe.
+ * The interfaces it finds are handed over with {@link #setInterfaces(List)} and
+ * held in one structure, and each sample only calls
+ * {@link NetworkIF#updateAttributes()} on them. Samples are taken by the
+ * {@link LiveSampler}, on its thread.
+ * </p>
+ */
+public class NetworkTelemetry {
+
+    // Replaced as a whole when the interfaces are enumerated again
+    private volatile Interfaces interfaces;
+
+    /**
+     * @param networkIFs The interfaces to measure, in the same order as the snapshot's interfaces
+     */
+    NetworkTelemetry(List<NetworkIF> networkIFs) {
+        interfaces = new Interfaces(networkIFs);
+    }
+
+    /**
+     * Replaces the interfaces being measured, after they were enumerated again.
+     * Rates restart from the next sample.
+     *
+     * @param networkIFs The interfaces to measure, in the same order as the snapshot's interfaces
+     */
+    void setInterfaces(List<NetworkIF> networkIFs) {
+        interfaces = new Interfaces(networkIFs);
+    }
+
+    /**
+     * Updates the counters of every interface and measures the rates since the
+     * previous sample. Must only be called from one thread at a time.
+     */
+    void sample() {
+        interfaces.sample();
+    }
+
+    /**
+     * @return The number of interfaces being measured
+     */
+    public int getInterfaceCount() {
+        return interfaces.networkIFs.length;
+    }
+
+    /**
+     * @param index The index of the interface
+     * @return The name of the interface, such as eth0
+     */
+    public String getName(int index) {
+        return interfaces.names[index];
+    }
+
+    /**
+     * @param index The index of the interface
+     * @return The bytes received per second at the latest sample
+     */
+    public double getReceiveBytesPerSecond(int index) {
+        return interfaces.receiveBytesPerSecond[index];
+    }
+
+    /**
+     * @param index The index of the interface
+     * @return The bytes sent per second at the latest sample
+     */
+    public double getTransmitBytesPerSecond(int index) {
+        return interfaces.transmitBytesPerSecond[index];
+    }
+
+    /**
+     * Formats the latest rates of an interface, such as "rx 1.20 MB/s, tx 0.30 MB/s".
+     *
+     * @param index The index of the interface
+     * @return The formatted reading, or null if the interface doesn't exist
+     */
+    public String format(int index) {
+        Interfaces current = interfaces;
+        if (index < 0 || index >= current.networkIFs.length) {
+            return null;
+        }
+        return String.format("rx %.2f MB/s, tx %.2f MB/s",
+                current.receiveBytesPerSecond[index] / 1e6, current.transmitBytesPerSecond[index] / 1e6);
+    }
+
+    /**
+     * One enumeration of the interfaces, with their counters at the previous
+     * sample and the rates measured from them.
+     */
+    private static class Interfaces {
+
+        private final NetworkIF[] networkIFs;
+        private final String[] names;
+        // Counters and their time at the previous sample
+        private final long[] bytesReceived;
+        private final long[] bytesSent;
+        private final long[] timestamps;
+        // Rates measured by the latest sample
+        private final double[] receiveBytesPerSecond;
+        private final double[] transmitBytesPerSecond;
+
+        Interfaces(List<NetworkIF> list) {
+            networkIFs = list.toArray(new NetworkIF[0]);
+            int count = networkIFs.length;
+            names = new String[count];
+            bytesReceived = new long[count];
+            bytesSent = new long[count];
+            timestamps = new long[count];
+            receiveBytesPerSecond = new double[count];
+            transmitBytesPerSecond = new double[count];
+            for (int i = 0; i < count; i++) {
+                names[i] = networkIFs[i].getName();
+                storeCounters(i);
+            }
+        }
+
+        void sample() {
+            for (int i = 0; i < networkIFs.length; i++) {
+                NetworkIF networkIF = networkIFs[i];
+                // The interface may have been removed, such as a stopped container's veth
+                if (!networkIF.updateAttributes()) {
+                    receiveBytesPerSecond[i] = 0;
+                    transmitBytesPerSecond[i] = 0;
+                    continue;
+                }
+                long elapsed = networkIF.getTimeStamp() - timestamps[i];
+                if (elapsed > 0) {
+                    double seconds = elapsed / 1000.0;
+                    receiveBytesPerSecond[i] = Math.max(0, networkIF.getBytesRecv() - bytesReceived[i]) / seconds;
+                    transmitBytesPerSecond[i] = Math.max(0, networkIF.getBytesSent() - bytesSent[i]) / seconds;
+                    storeCounters(i);
+                }
+            }
+        }
+
+        private void storeCounters(int i) {
+            bytesReceived[i] = networkIFs[i].getBytesRecv();
+            bytesSent[i] = networkIFs[i].getBytesSent();
+            timestamps[i] = networkIFs[i].getTimeStamp();
+        }
+
+    }
+
+}
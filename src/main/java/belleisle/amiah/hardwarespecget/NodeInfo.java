@@ -1,12 +1,19 @@
 package belleisle.amiah.hardwarespecget;
 
 import javafx.beans.property.SimpleBooleanProperty;
+import javafx.beans.property.SimpleStringProperty;
 
 public class NodeInfo {
 
     private HardwareType type;
     private int index = 0;
     private SimpleBooleanProperty isShown = new SimpleBooleanProperty(true);
+    // The displayed content, updated by refreshContent
+    private SimpleStringProperty content = new SimpleStringProperty("");
+    // The content from the last snapshot, before any live value is applied
+    private String snapshotContent = null;
+    // The latest sampled value, or null until refreshLiveContent is first called
+    private String liveValue = null;
     private String userTitle;
     private String userContent;
 
@@ -27,6 +34,20 @@ public class NodeInfo {
         this.isShown.set(isShown);
     }
 
+    /**
+     * Creates a copy of this node's saved data. The copy shares no properties
+     * with this node, so it can safely be read from another thread.
+     *
+     * @return A copy of this NodeInfo
+     */
+    public NodeInfo copy() {
+        NodeInfo copy = new NodeInfo(type, index, isShown.get());
+        copy.setMainColor(mainColor);
+        copy.setUserTitle(userTitle);
+        copy.setUserContent(userContent);
+        return copy;
+    }
+
     public String getTitle() {
         return switch (type) {
             case CPU -> "CPU";
@@ -39,24 +60,115 @@ public class NodeInfo {
             case KERNEL -> "Kernel";
             case USERNAME -> "Username";
             case USERDATA -> userTitle;
+            case CPU_CORE -> "CPU Core " + index;
+            case NETWORK -> "Network";
+            case SENSORS -> "Sensors";
+            case PROCESSES -> index == ProcessTracker.CPU_INDEX ? "Top Processes by CPU" : "Top Processes by Memory";
         };
     }
 
     public String getContent() {
+        return getContent(HardwareCollector.getSnapshot());
+    }
+
+    /**
+     * Gets the content of this node from a snapshot, rather than
+     * collecting the hardware information again.
+     *
+     * @param snapshot The snapshot to read from
+     * @return The content to display for this node
+     */
+    public String getContent(HardwareSnapshot snapshot) {
         return switch (type) {
-            case CPU -> HardwareCollector.getCPU();
-            case GPU -> HardwareCollector.getGPUs().get(index);
-            case DISK -> HardwareCollector.getDisk().get(index);
-            case RAM -> HardwareCollector.getRAM();
-            case MOTHERBOARD -> HardwareCollector.getMotherboard();
             case DISPLAY -> "Not yet implemented";
-            case OS -> HardwareCollector.getOS();
-            case KERNEL -> HardwareCollector.getKernel();
-            case USERNAME -> HardwareCollector.getUsername();
             case USERDATA -> userContent;
+            default -> {
+                String content = snapshot.getContent(type, index);
+                // The hardware may have been removed since the layout was saved
+                if (content == null) {
+                    yield "Not detected";
+                }
+                // The probe is failing, so this is the last value it returned
+                yield snapshot.isStale(type) ? content + " (stale)" : content;
+            }
+        };
+    }
+
+    /**
+     * Updates the displayed content from a snapshot. The content property
+     * is only changed if the content is different.
+     *
+     * @param snapshot The snapshot to read from
+     * @return true if the content changed, false otherwise
+     */
+    public boolean refreshContent(HardwareSnapshot snapshot) {
+        String newContent = getContent(snapshot);
+        if (newContent == null) {
+            return false;
+        }
+        snapshotContent = newContent;
+        return setContent(applyLiveValue(newContent));
+    }
+
+    /**
+     * Updates the displayed content from the latest sample, for types whose
+     * values change while the application runs. Other types are left unchanged.
+     *
+     * @param sampler The sampler to read from
+     * @return true if the content changed, false otherwise
+     */
+    public boolean refreshLiveContent(LiveSampler sampler) {
+        if (sampler.getSampleCount() == 0) {
+            return false;
+        }
+        liveValue = switch (type) {
+            case RAM -> HardwareCollector.formatRam(sampler.getLatestAvailableMemory(), sampler.getTotalMemory());
+            case CPU -> String.format("%.0f%% load", sampler.getLatestCpuLoad() * 100);
+            case CPU_CORE -> sampler.getCpuTelemetry().format(index);
+            case DISK -> sampler.getDiskTelemetry().format(index);
+            case NETWORK -> sampler.getNetworkTelemetry().format(index);
+            // Polled separately, at a rate that adapts to the readings
+            case SENSORS -> SensorPoller.getShared().format();
+            case PROCESSES -> ProcessTracker.getShared().format(index);
+            default -> null;
+        };
+        if (liveValue == null || snapshotContent == null) {
+            return false;
+        }
+        return setContent(applyLiveValue(snapshotContent));
+    }
+
+    // Replaces the RAM usage and core readings, adds the load after the CPU name,
+    // and adds disk and network rates on a line below the name
+    private String applyLiveValue(String base) {
+        if (liveValue == null) {
+            return base;
+        }
+        return switch (type) {
+            case RAM, CPU_CORE, SENSORS, PROCESSES -> liveValue;
+            case CPU -> base + " (" + liveValue + ")";
+            case DISK, NETWORK -> base + System.lineSeparator() + liveValue;
+            default -> base;
         };
     }
 
+    // Only changes the property if the content is different
+    private boolean setContent(String newContent) {
+        if (newContent.equals(content.get())) {
+            return false;
+        }
+        content.set(newContent);
+        return true;
+    }
+
+    /**
+     * @param other The NodeInfo to compare with
+     * @return true if both NodeInfos display the same piece of hardware
+     */
+    public boolean isSameHardware(NodeInfo other) {
+        return type == other.type && index == other.index;
+    }
+
     // Getters
     public boolean getIsShown() {
         return isShown.get();
@@ -66,6 +178,10 @@ public class NodeInfo {
         return isShown;
     }
 
+    protected SimpleStringProperty getContentProperty() {
+        return content;
+    }
+
     public int getIndex() {
         return index;
     }
@@ -112,6 +228,7 @@ public class NodeInfo {
     }
 
     // Enums
+    // Binary save files store the ordinal, so new types must be added at the end
     public enum HardwareType {
         CPU("CPU"),
         GPU("GPU"),
@@ -122,7 +239,11 @@ public class NodeInfo {
         OS("OS"),
         KERNEL("KERNEL"),
         USERNAME("USERNAME"),
-        USERDATA("USERDATA");
+        USERDATA("USERDATA"),
+        CPU_CORE("CPU_CORE"),
+        NETWORK("NETWORK"),
+        SENSORS("SENSORS"),
+        PROCESSES("PROCESSES");
 
         private final String valueAsString;
 
@@ -134,6 +255,14 @@ public class NodeInfo {
             return valueAsString;
         }
 
+        /**
+         * @return true if the content of this type changes on every refresh, even
+         *         when the hardware is the same, such as the available RAM
+         */
+        public boolean isVolatile() {
+            return this == RAM || this == CPU_CORE || this == SENSORS || this == PROCESSES;
+        }
+
         public static HardwareType stringToValue(String type) {
             return switch (type.toUpperCase()) {
                 case "CPU" -> CPU;
@@ -146,6 +275,10 @@ public class NodeInfo {
                 case "KERNEL" -> KERNEL;
                 case "USERNAME" -> USERNAME;
                 case "USERDATA" -> USERDATA;
+                case "CPU_CORE", "CPU CORE" -> CPU_CORE;
+                case "NETWORK" -> NETWORK;
+                case "SENSORS" -> SENSORS;
+                case "PROCESSES" -> PROCESSES;
               default -> null;
             };
         }
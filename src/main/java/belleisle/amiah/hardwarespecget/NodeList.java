@@ -7,18 +7,34 @@ import javafx.scene.control.*;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
 import javafx.scene.layout.VBox;
 import javafx.scene.Node;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Consumer;
 
 
 public class NodeList {
 
     private ObservableList<Node> nodeList = null;
+    // Called whenever the user reorders nodes or toggles their visibility
+    private Runnable onLayoutChanged = () -> {};
+    // Called whenever the user shows a hidden node
+    private Consumer<NodeInfo> onNodeShown = info -> {};
+    // Shared by every node in the list, rather than each node creating its own
+    private final BooleanBinding isNotEditMode = HardwareSpecApplication.IS_EDIT_MODE.not();
+    // Key of the node property holding the action that releases the node's bindings
+    private static final String RELEASE_KEY = "release-bindings";
+    // Width and height of the icon next to each node's title
+    private static final double ICON_SIZE = 30;
 
 
     public NodeList(ObservableList<Node> nodeList) {
@@ -26,13 +42,24 @@ public class NodeList {
     }
 
     public void createElementInList(NodeInfo info) {
+        nodeList.add(createElement(info));
+    }
+
+    /**
+     * Creates the pane displaying a NodeInfo. The pane isn't added to the list.
+     *
+     * @param info The NodeInfo to display
+     * @return The pane, with the NodeInfo as its user data
+     */
+    private VBox createElement(NodeInfo info) {
 
         /* ========================= *
          * Create Panes and Controls *
          * ========================= */
 
         Label titleLabel = new Label(info.getTitle());
-        Label contentLabel = new Label(info.getContent());
+        info.refreshContent(HardwareCollector.getSnapshot());
+        Label contentLabel = new Label();
         ImageView icon = new ImageView();
         Button moveUpButton = new Button("⏶");
         Button moveDownButton = new Button("⏷");
@@ -50,7 +77,7 @@ public class NodeList {
         rootNode.setUserData(info);
 
         // Properties and bindings
-        BooleanBinding isHiddenAndNotEditing = info.getIsShownProperty().not().and(HardwareSpecApplication.IS_EDIT_MODE.not());
+        BooleanBinding isHiddenAndNotEditing = info.getIsShownProperty().not().and(isNotEditMode);
 
         /* ==================================== *
          * Set properties of controls and panes *
@@ -66,14 +93,17 @@ public class NodeList {
 
         // Title properties
         titleLabel.setPrefHeight(30);
+        // Fill the space between the icon and the right buttons
+        titleLabel.setMaxWidth(Double.MAX_VALUE);
+        HBox.setHgrow(titleLabel, Priority.ALWAYS);
         titleLabel.setFont(Font.font(Font.getDefault().getFamily(), FontWeight.BOLD, Font.getDefault().getSize()));
         // Content Properties
         contentLabel.setPadding(new Insets(0, 0, 6, 5));
         // Image Properties
-        icon.setImage(FileUtil.getImage("app_icon.png"));
+        icon.setImage(FileUtil.getImage("app_icon.png", ICON_SIZE, ICON_SIZE));
         icon.setPreserveRatio(true);
-        icon.setFitHeight(30);
-        icon.setFitWidth(30);
+        icon.setFitHeight(ICON_SIZE);
+        icon.setFitWidth(ICON_SIZE);
         // Toggle button properties
         visibilityToggleButton.setMinWidth(40);
 
@@ -81,6 +111,7 @@ public class NodeList {
          * Bindings *
          * ======== */
 
+        contentLabel.textProperty().bind(info.getContentProperty());
         rootNode.visibleProperty().bind(isHiddenAndNotEditing.not());
         rootNode.managedProperty().bind(isHiddenAndNotEditing.not());
         visibilityToggleButton.managedProperty().bind(HardwareSpecApplication.IS_EDIT_MODE);
@@ -90,15 +121,14 @@ public class NodeList {
          * Listeners and Control Actions *
          * ============================= */
 
-        // Scale vbox to fit scroll pane width (minus 33 to account for scrollbar width)
-        HardwareSpecApplication.rootStage.widthProperty().addListener(event -> {
-            rootNode.setPrefWidth((HardwareSpecApplication.rootStage.getWidth() / 2) - 33);
-        });
-        // Scale name to fit the space between the icon and the right buttons
-        titleBox.widthProperty().addListener(event -> {
-            titleLabel.setPrefWidth(((HardwareSpecApplication.rootStage.getWidth() / 2) - 33)
-                                - icon.getFitWidth()
-                                - buttonBox.widthProperty().get());
+        // Bindings to shared properties would keep the node alive, so release them on removal
+        rootNode.getProperties().put(RELEASE_KEY, (Runnable) () -> {
+            contentLabel.textProperty().unbind();
+            rootNode.visibleProperty().unbind();
+            rootNode.managedProperty().unbind();
+            visibilityToggleButton.managedProperty().unbind();
+            visibilityToggleButton.visibleProperty().unbind();
+            isHiddenAndNotEditing.dispose();
         });
         // Change the text of the visibility toggle depending on state
         visibilityToggleButton.selectedProperty().addListener(event -> {
@@ -109,7 +139,9 @@ public class NodeList {
             else {
                 visibilityToggleButton.setText("On");
                 info.setIsShown(true);
+                onNodeShown.accept(info);
             }
+            onLayoutChanged.run();
         });
 
         moveUpButton.setOnAction(event -> swapNodes(nodeList.indexOf(rootNode), NodeSwapDirection.UP));
@@ -127,12 +159,7 @@ public class NodeList {
                 + "-fx-background-insets: -6 -4 -2 -4;"
                 + "-fx-background-radius: 3.75;");
 
-        /* ===================== *
-         * Add element to parent *
-         * ===================== */
-
-        nodeList.add(rootNode);
-
+        return rootNode;
     }
 
     // Used for the swapNodes method
@@ -209,25 +236,225 @@ public class NodeList {
             }
             // Finally, add the node to the list
             nodeList.add(insertionIndex, iTemp);
+            onLayoutChanged.run();
+        }
+    }
+
+    /**
+     * Sets the action to run whenever the user reorders nodes or
+     * toggles their visibility.
+     *
+     * @param onLayoutChanged The action to run
+     */
+    public void setOnLayoutChanged(Runnable onLayoutChanged) {
+        this.onLayoutChanged = onLayoutChanged;
+    }
+
+    /**
+     * Sets the action to run whenever the user shows a hidden node, such as
+     * collecting hardware that wasn't collected while the node was hidden.
+     *
+     * @param onNodeShown The action to run, given the node that was shown
+     */
+    public void setOnNodeShown(Consumer<NodeInfo> onNodeShown) {
+        this.onNodeShown = onNodeShown;
+    }
+
+    /**
+     * Gets the hardware types worth collecting for the two lists. A type is skipped
+     * only if it has nodes and every one of them is hidden. Types without any nodes
+     * are still collected, so that newly added hardware is found.
+     *
+     * @param left The left list
+     * @param right The right list
+     * @return The types that should be collected
+     */
+    public static EnumSet<NodeInfo.HardwareType> getDemandedTypes(NodeList left, NodeList right) {
+        EnumSet<NodeInfo.HardwareType> present = EnumSet.noneOf(NodeInfo.HardwareType.class);
+        EnumSet<NodeInfo.HardwareType> shown = EnumSet.noneOf(NodeInfo.HardwareType.class);
+        for (NodeList list : List.of(left, right)) {
+            for (NodeInfo info : list.getNodeInfos()) {
+                present.add(info.getType());
+                if (info.getIsShown()) {
+                    shown.add(info.getType());
+                }
+            }
         }
+        EnumSet<NodeInfo.HardwareType> demanded = EnumSet.complementOf(present);
+        demanded.addAll(shown);
+        return demanded;
     }
 
     public ObservableList<Node> getNodeList() {
         return nodeList;
     }
 
+    /**
+     * @return The NodeInfo of every node in the list, in display order
+     */
+    public List<NodeInfo> getNodeInfos() {
+        ArrayList<NodeInfo> infos = new ArrayList<>(nodeList.size());
+        for (Node n : nodeList) {
+            infos.add((NodeInfo) n.getUserData());
+        }
+        return infos;
+    }
+
     public void addAllNodes(Collection<NodeInfo> nodes) {
         for (NodeInfo ni : nodes) {
             createElementInList(ni);
         }
-        // Jiggle the stage width so that the nodes' listeners get called
-        // to update their appearance
-        HardwareSpecApplication.rootStage.setWidth(HardwareSpecApplication.rootStage.getWidth() + 1);
-        HardwareSpecApplication.rootStage.setWidth(HardwareSpecApplication.rootStage.getWidth() - 1);
+    }
+
+    /**
+     * Updates both lists to match newly collected hardware, instead of
+     * clearing and rebuilding them.
+     * <p>
+     * Existing nodes are matched to the collected nodes by type and index, wherever
+     * the user has moved them. Matched nodes keep their position and visibility, and
+     * only have their content updated if it changed. Nodes whose hardware is no longer
+     * present are removed, and new hardware is inserted after the last node of the
+     * same type in its default list. Nodes of types the snapshot didn't collect are left alone.
+     * </p>
+     *
+     * @param left The left list
+     * @param right The right list
+     * @param leftCollected The collected nodes that belong in the left list by default
+     * @param rightCollected The collected nodes that belong in the right list by default
+     * @param snapshot The snapshot the nodes were collected from
+     * @return true if any nodes were added or removed, false otherwise
+     */
+    public static boolean updateNodes(NodeList left, NodeList right,
+                                      Collection<NodeInfo> leftCollected, Collection<NodeInfo> rightCollected,
+                                      HardwareSnapshot snapshot) {
+        // Collected nodes that haven't been matched to an existing node yet
+        HashMap<NodeKey, NodeInfo> unmatchedLeft = new HashMap<>();
+        HashMap<NodeKey, NodeInfo> unmatchedRight = new HashMap<>();
+        for (NodeInfo info : leftCollected) {
+            unmatchedLeft.put(NodeKey.of(info), info);
+        }
+        for (NodeInfo info : rightCollected) {
+            unmatchedRight.put(NodeKey.of(info), info);
+        }
+
+        boolean removedNodes = left.updateExistingNodes(unmatchedLeft, unmatchedRight, snapshot);
+        removedNodes |= right.updateExistingNodes(unmatchedLeft, unmatchedRight, snapshot);
+
+        // Anything still unmatched is new hardware
+        boolean addedNodes = !unmatchedLeft.isEmpty() || !unmatchedRight.isEmpty();
+        for (NodeInfo info : leftCollected) {
+            if (unmatchedLeft.containsKey(NodeKey.of(info))) {
+                left.insertAfterSameType(info);
+            }
+        }
+        for (NodeInfo info : rightCollected) {
+            if (unmatchedRight.containsKey(NodeKey.of(info))) {
+                right.insertAfterSameType(info);
+            }
+        }
+
+        return removedNodes || addedNodes;
+    }
+
+    /**
+     * @param type The type of hardware
+     * @return true if any node of the type is shown, false otherwise
+     */
+    public boolean hasShownNode(NodeInfo.HardwareType type) {
+        for (Node n : nodeList) {
+            NodeInfo info = (NodeInfo) n.getUserData();
+            if (info.getType() == type && info.getIsShown()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Updates the content of every node whose values are sampled live, such as
+     * RAM usage and CPU load. Nodes are never added or removed.
+     *
+     * @param sampler The sampler to read from
+     */
+    public void refreshLiveContent(LiveSampler sampler) {
+        for (Node n : nodeList) {
+            ((NodeInfo) n.getUserData()).refreshLiveContent(sampler);
+        }
+    }
+
+    /**
+     * Refreshes the content of nodes that were collected again, and removes nodes
+     * whose hardware is no longer present. Matched nodes are removed from the
+     * unmatched maps.
+     *
+     * @return true if any nodes were removed, false otherwise
+     */
+    private boolean updateExistingNodes(HashMap<NodeKey, NodeInfo> unmatchedLeft,
+                                        HashMap<NodeKey, NodeInfo> unmatchedRight,
+                                        HardwareSnapshot snapshot) {
+        return nodeList.removeIf(n -> {
+            NodeInfo info = (NodeInfo) n.getUserData();
+            // Leave user data and types that weren't collected alone
+            if (!snapshot.contains(info.getType())) {
+                return false;
+            }
+            NodeKey key = NodeKey.of(info);
+            // A collected node only belongs to one of the lists by default
+            if (unmatchedLeft.remove(key) != null || unmatchedRight.remove(key) != null) {
+                info.refreshContent(snapshot);
+                return false;
+            }
+            // The hardware is no longer present
+            release(n);
+            return true;
+        });
+    }
+
+    /**
+     * Inserts a node after the last node of the same type, or at the
+     * end of the list if there are none.
+     *
+     * @param info The NodeInfo to insert
+     */
+    private void insertAfterSameType(NodeInfo info) {
+        int insertionIndex = nodeList.size();
+        for (int i = nodeList.size() - 1; i >= 0; i--) {
+            if (((NodeInfo) nodeList.get(i).getUserData()).getType() == info.getType()) {
+                insertionIndex = i + 1;
+                break;
+            }
+        }
+        nodeList.add(insertionIndex, createElement(info));
+    }
+
+    // Identifies the piece of hardware a node displays
+    private record NodeKey(NodeInfo.HardwareType type, int index) {
+        static NodeKey of(NodeInfo info) {
+            return new NodeKey(info.getType(), info.getIndex());
+        }
     }
 
     public void clearNonUserNodes() {
-        nodeList.removeIf(n -> ((NodeInfo) n.getUserData()).getType() != NodeInfo.HardwareType.USERDATA);
+        nodeList.removeIf(n -> {
+            if (((NodeInfo) n.getUserData()).getType() != NodeInfo.HardwareType.USERDATA) {
+                release(n);
+                return true;
+            }
+            return false;
+        });
+    }
+
+    /**
+     * Releases the bindings a node holds on shared properties. Must be
+     * called when a node is removed from the list for good.
+     *
+     * @param n The removed node
+     */
+    private static void release(Node n) {
+        Object release = n.getProperties().remove(RELEASE_KEY);
+        if (release != null) {
+            ((Runnable) release).run();
+        }
     }
 
 }
@@ -0,0 +1,113 @@
+package belleisle.amiah.hardwarespecget;
+
+/**
+ * Stops running a probe that keeps failing or timing out.
+ * <p>
+ * After {@value #FAILURE_THRESHOLD_PROPERTY} consecutive failures the breaker
+ * opens, and the probe is skipped until a cooldown has passed. The probe is then
+ * tried once. If it succeeds the breaker closes again, otherwise it reopens with
+ * twice the cooldown, up to a maximum. While the breaker is open, the last good
+ * value of the probe is served as stale.
+ * </p>
+ *
+ * @see HardwareCollector#takeSnapshotAsync(java.util.Set)
+ */
+class ProbeCircuitBreaker {
+
+    public static final String FAILURE_THRESHOLD_PROPERTY = "hardwarespecget.probe.failureThreshold";
+    public static final String COOLDOWN_PROPERTY = "hardwarespecget.probe.cooldownMillis";
+    private static final int DEFAULT_FAILURE_THRESHOLD = 3;
+    private static final long DEFAULT_COOLDOWN = 30_000;
+    // The cooldown never grows past this many milliseconds
+    private static final long MAX_COOLDOWN = 15 * 60_000;
+
+    private final int failureThreshold;
+    private final long baseCooldownNanos;
+    private final long maxCooldownNanos;
+
+    // All guarded by this
+    private State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+    private long cooldownNanos;
+    private long openUntil = 0;
+
+    ProbeCircuitBreaker() {
+        this(Integer.getInteger(FAILURE_THRESHOLD_PROPERTY, DEFAULT_FAILURE_THRESHOLD),
+                Long.getLong(COOLDOWN_PROPERTY, DEFAULT_COOLDOWN));
+    }
+
+    /**
+     * @param failureThreshold The number of consecutive failures that open the breaker
+     * @param cooldownMillis The first cooldown after the breaker opens
+     */
+    ProbeCircuitBreaker(int failureThreshold, long cooldownMillis) {
+        this.failureThreshold = Math.max(failureThreshold, 1);
+        this.baseCooldownNanos = cooldownMillis * 1_000_000;
+        this.maxCooldownNanos = Math.max(MAX_COOLDOWN * 1_000_000, baseCooldownNanos);
+        this.cooldownNanos = baseCooldownNanos;
+    }
+
+    /**
+     * Checks whether the probe should be run. Once the cooldown has passed, only
+     * a single trial run is allowed until its result is recorded.
+     *
+     * @return true if the probe should be run, false if it should be skipped
+     */
+    synchronized boolean tryAcquire() {
+        return switch (state) {
+            case CLOSED -> true;
+            case HALF_OPEN -> false;
+            case OPEN -> {
+                if (System.nanoTime() - openUntil < 0) {
+                    yield false;
+                }
+                state = State.HALF_OPEN;
+                yield true;
+            }
+        };
+    }
+
+    /**
+     * Records that a run allowed by {@link #tryAcquire()} succeeded.
+     */
+    synchronized void recordSuccess() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        cooldownNanos = baseCooldownNanos;
+    }
+
+    /**
+     * Records that a run allowed by {@link #tryAcquire()} failed or timed out.
+     */
+    synchronized void recordFailure() {
+        if (state == State.HALF_OPEN) {
+            // The trial run failed, so wait longer before the next one
+            cooldownNanos = Math.min(cooldownNanos * 2, maxCooldownNanos);
+            open();
+            return;
+        }
+        consecutiveFailures++;
+        if (consecutiveFailures >= failureThreshold) {
+            open();
+        }
+    }
+
+    /**
+     * @return true if the probe is currently being skipped
+     */
+    synchronized boolean isOpen() {
+        return state != State.CLOSED;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openUntil = System.nanoTime() + cooldownNanos;
+    }
+
+    private enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+}
@@ -0,0 +1,41 @@
+package belleisle.amiah.hardwarespecget;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event committed every time a hardware probe runs.
+ * <p>
+ * Record with {@code -XX:StartFlightRecording} and look for
+ * {@code belleisle.amiah.hardwarespecget.Probe} events to see which probes
+ * are slow on a host, during startup and every recollect.
+ * </p>
+ *
+ * @see HardwareCollector#takeSnapshotAsync(java.util.Set)
+ */
+@Name("belleisle.amiah.hardwarespecget.Probe")
+@Label("Hardware Probe")
+@Category("Hardware Spec Get")
+@Description("A single hardware probe run while taking a snapshot")
+@StackTrace(false)
+public class ProbeEvent extends jdk.jfr.Event {
+
+    @Label("Probe")
+    @Description("The type of hardware the probe collects")
+    String probe;
+
+    @Label("Item Count")
+    @Description("The number of entries the probe returned")
+    int itemCount;
+
+    @Label("Failed")
+    boolean failed;
+
+    @Label("Failure")
+    @Description("The exception thrown by the probe, if it failed")
+    String failure;
+
+}
@@ -0,0 +1,158 @@
+package belleisle.amiah.hardwarespecget;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Keeps the most recent run times of each hardware probe, so that the
+ * p50 and p99 latency of every probe can be shown without a profiler.
+ * <p>
+ * If the {@value #DUMP_FILE_PROPERTY} system property is set, a summary is
+ * written to that file when the application exits.
+ * </p>
+ *
+ * @see ProbeEvent
+ */
+public abstract class ProbeTimings {
+
+    public static final String DUMP_FILE_PROPERTY = "hardwarespecget.probeTimings.file";
+
+    // Number of runs remembered per probe
+    private static final int SAMPLE_COUNT = 256;
+
+    private static final Map<NodeInfo.HardwareType, Samples> SAMPLES = new EnumMap<>(NodeInfo.HardwareType.class);
+
+    /**
+     * Records a single run of a probe.
+     *
+     * @param type The type of hardware the probe collects
+     * @param nanos How long the probe took, in nanoseconds
+     * @param failed Whether the probe threw an exception
+     */
+    public static void record(NodeInfo.HardwareType type, long nanos, boolean failed) {
+        Samples samples;
+        synchronized (SAMPLES) {
+            samples = SAMPLES.computeIfAbsent(type, key -> new Samples());
+        }
+        samples.add(nanos, failed);
+    }
+
+    /**
+     * Summarizes the recent runs of every probe that has run at least once.
+     *
+     * @return A summary of each probe, in hardware type order
+     */
+    public static List<Summary> getSummaries() {
+        List<Summary> summaries = new ArrayList<>();
+        synchronized (SAMPLES) {
+            for (Map.Entry<NodeInfo.HardwareType, Samples> entry : SAMPLES.entrySet()) {
+                summaries.add(entry.getValue().summarize(entry.getKey()));
+            }
+        }
+        return summaries;
+    }
+
+    /**
+     * Writes a summary table of every probe as plain text.
+     *
+     * @param file The file to write to. It is replaced if it exists.
+     * @throws IOException If unable to write the file
+     */
+    public static void writeSummary(Path file) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file)) {
+            out.write(String.format(Locale.ROOT, "%-12s %8s %8s %12s %12s%n", "probe", "runs", "failed", "p50 (ms)", "p99 (ms)"));
+            for (Summary summary : getSummaries()) {
+                out.write(String.format(Locale.ROOT, "%-12s %8d %8d %12.3f %12.3f%n",
+                        summary.type().getValueAsString(), summary.runs(), summary.failures(),
+                        summary.p50Millis(), summary.p99Millis()));
+            }
+        }
+    }
+
+    /**
+     * Writes the summary to the file named by {@value #DUMP_FILE_PROPERTY}
+     * when the JVM exits. Does nothing if the property isn't set.
+     */
+    public static void dumpOnExitIfRequested() {
+        String file = System.getProperty(DUMP_FILE_PROPERTY);
+        if (file == null || file.isBlank()) {
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                writeSummary(Path.of(file));
+            }
+            catch (IOException e) {
+                System.err.println("Unable to write the probe timings: " + e.getMessage());
+            }
+        }, "probe-timings-dump"));
+    }
+
+    /**
+     * The recent latency of a single probe.
+     *
+     * @param type The type of hardware the probe collects
+     * @param runs The number of runs the latencies were taken from, at most the most recent 256
+     * @param failures The number of those runs that failed
+     * @param p50Nanos The median run time, in nanoseconds
+     * @param p99Nanos The 99th percentile run time, in nanoseconds
+     */
+    public record Summary(NodeInfo.HardwareType type, int runs, int failures, long p50Nanos, long p99Nanos) {
+
+        public double p50Millis() {
+            return p50Nanos / 1_000_000.0;
+        }
+
+        public double p99Millis() {
+            return p99Nanos / 1_000_000.0;
+        }
+
+    }
+
+    // A ring buffer of the most recent run times of one probe
+    private static class Samples {
+
+        private final long[] nanos = new long[SAMPLE_COUNT];
+        private final boolean[] failed = new boolean[SAMPLE_COUNT];
+        private int next = 0;
+        private int size = 0;
+
+        synchronized void add(long duration, boolean didFail) {
+            nanos[next] = duration;
+            failed[next] = didFail;
+            next = (next + 1) % SAMPLE_COUNT;
+            size = Math.min(size + 1, SAMPLE_COUNT);
+        }
+
+        synchronized Summary summarize(NodeInfo.HardwareType type) {
+            long[] sorted = Arrays.copyOf(nanos, size);
+            Arrays.sort(sorted);
+            int failures = 0;
+            for (int i = 0; i < size; i++) {
+                if (failed[i]) {
+                    failures++;
+                }
+            }
+            return new Summary(type, size, failures, percentile(sorted, 50), percentile(sorted, 99));
+        }
+
+        // Nearest rank percentile of a sorted array
+        private static long percentile(long[] sorted, int percent) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+            return sorted[Math.max(rank, 1) - 1];
+        }
+
+    }
+
+}
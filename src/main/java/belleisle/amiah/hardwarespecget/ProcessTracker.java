@@ -0,0 +1,344 @@
+package belleisle.amiah.hardwarespecget;
+
+import oshi.software.os.OSProcess;
+import oshi.software.os.OperatingSystem;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks the processes using the most CPU and memory.
+ * <p>
+ * The CPU use of a process is the share of the machine's CPU time it used
+ * since the previous sample, so each process's CPU time is kept between samples
+ * in a primitive map keyed by process ID. The top processes by each measure
+ * are selected with a bounded min-heap as the
+ * processes are read, instead of sorting them all. Heap entries are reused
+ * between samples, so hosts with thousands of processes add no garbage beyond
+ * what OSHI creates while reading them.
+ * </p>
+ * <p>
+ * Processes are only sampled while the tracker is active, every 5 seconds by
+ * default. The interval and the number of processes shown (5 by default) can be
+ * set with the {@value #INTERVAL_PROPERTY} and {@value #TOP_COUNT_PROPERTY}
+ * system properties.
+ * </p>
+ */
+public class ProcessTracker {
+
+    public static final String INTERVAL_PROPERTY = "hardwarespecget.processes.intervalMillis";
+    public static final String TOP_COUNT_PROPERTY = "hardwarespecget.processes.top";
+    private static final long DEFAULT_INTERVAL = 5000;
+    private static final int DEFAULT_TOP_COUNT = 5;
+    // Milliseconds between the two samples taken when CPU use is needed right away
+    private static final long FIRST_SAMPLE_DELAY = 500;
+    // Indexes of the two lists, which are also the indexes of their nodes
+    public static final int CPU_INDEX = 0;
+    public static final int MEMORY_INDEX = 1;
+
+    private static final Comparator<Usage> BY_CPU = Comparator.comparingDouble(usage -> usage.cpu);
+    private static final Comparator<Usage> BY_MEMORY = Comparator.comparingLong(usage -> usage.residentBytes);
+
+    private static ProcessTracker shared = null;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "process-tracker");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final OperatingSystem os;
+    private final int logicalProcessors;
+    private final long interval;
+    private final int topCount;
+
+    // Everything below is guarded by this
+    private boolean active = false;
+    private ScheduledFuture<?> nextSample = null;
+    // CPU time of each process at the previous sample, and the map being filled by the current one
+    private PidTimes previousTimes = new PidTimes(1024);
+    private PidTimes currentTimes = new PidTimes(1024);
+    private long previousSampleTime = 0;
+    private long sampleCount = 0;
+    // Min-heaps, so the smallest of the top processes is the one replaced
+    private final PriorityQueue<Usage> topCpu;
+    private final PriorityQueue<Usage> topMemory;
+    private final ArrayDeque<Usage> spareUsages = new ArrayDeque<>();
+
+    // The results of the latest sample, replaced as a whole
+    private volatile List<Usage> latestCpu = List.of();
+    private volatile List<Usage> latestMemory = List.of();
+
+    /**
+     * Creates an inactive tracker, using the interval and count set by system properties.
+     *
+     * @param os The operating system to read processes from
+     * @param logicalProcessors The number of logical processors, to scale CPU use by
+     */
+    ProcessTracker(OperatingSystem os, int logicalProcessors) {
+        this.os = os;
+        this.logicalProcessors = Math.max(1, logicalProcessors);
+        interval = Long.getLong(INTERVAL_PROPERTY, DEFAULT_INTERVAL);
+        topCount = Math.max(1, Integer.getInteger(TOP_COUNT_PROPERTY, DEFAULT_TOP_COUNT));
+        topCpu = new PriorityQueue<>(topCount + 1, BY_CPU);
+        topMemory = new PriorityQueue<>(topCount + 1, BY_MEMORY);
+    }
+
+    /**
+     * @return The tracker shared by the UI and the process probe, created inactive on first use
+     */
+    public static synchronized ProcessTracker getShared() {
+        if (shared == null) {
+            shared = new ProcessTracker(HardwareCollector.getOperatingSystem(),
+                    HardwareCollector.getHardware().getProcessor().getLogicalProcessorCount());
+        }
+        return shared;
+    }
+
+    /**
+     * Starts or stops sampling every interval. Starting samples immediately.
+     *
+     * @param active true to sample, false to stop sampling
+     */
+    public synchronized void setActive(boolean active) {
+        if (this.active == active) {
+            return;
+        }
+        this.active = active;
+        if (active) {
+            nextSample = scheduler.scheduleWithFixedDelay(this::sampleQuietly, 0, interval, TimeUnit.MILLISECONDS);
+        }
+        else if (nextSample != null) {
+            nextSample.cancel(false);
+            nextSample = null;
+        }
+    }
+
+    /**
+     * Makes sure the CPU use has been measured over an interval, taking two
+     * samples a short time apart if fewer than two have been taken.
+     *
+     * @throws InterruptedException If interrupted between the samples
+     */
+    void ensureMeasured() throws InterruptedException {
+        synchronized (this) {
+            if (sampleCount >= 2) {
+                return;
+            }
+            if (sampleCount == 0) {
+                sample();
+            }
+        }
+        Thread.sleep(FIRST_SAMPLE_DELAY);
+        synchronized (this) {
+            if (sampleCount < 2) {
+                sample();
+            }
+        }
+    }
+
+    private void sampleQuietly() {
+        try {
+            synchronized (this) {
+                sample();
+            }
+        }
+        catch (RuntimeException e) {
+            // Try again next interval
+        }
+    }
+
+    /* ======== *
+     * Sampling *
+     * ======== */
+
+    // Must hold the lock
+    private void sample() {
+        List<OSProcess> processes = os.getProcesses();
+        long now = System.currentTimeMillis();
+        long elapsed = now - previousSampleTime;
+        // Available CPU time across every logical processor, in milliseconds
+        double capacity = (double) elapsed * logicalProcessors;
+
+        spareUsages.addAll(topCpu);
+        spareUsages.addAll(topMemory);
+        topCpu.clear();
+        topMemory.clear();
+        currentTimes.clear(processes.size());
+
+        for (int i = 0; i < processes.size(); i++) {
+            OSProcess process = processes.get(i);
+            int pid = process.getProcessID();
+            long time = process.getKernelTime() + process.getUserTime();
+            currentTimes.put(pid, time);
+
+            double cpu = 0;
+            long previous = previousTimes.get(pid);
+            // New processes have no previous time, so their CPU use is measured from the next sample
+            if (sampleCount > 0 && previous >= 0 && capacity > 0) {
+                cpu = Math.max(0, time - previous) / capacity;
+            }
+            long resident = process.getResidentSetSize();
+            if (cpu > 0 && (topCpu.size() < topCount || cpu > topCpu.peek().cpu)) {
+                offer(topCpu, process, pid, cpu, resident);
+            }
+            if (topMemory.size() < topCount || resident > topMemory.peek().residentBytes) {
+                offer(topMemory, process, pid, cpu, resident);
+            }
+        }
+
+        PidTimes swap = previousTimes;
+        previousTimes = currentTimes;
+        currentTimes = swap;
+        previousSampleTime = now;
+        sampleCount++;
+
+        latestCpu = copyDescending(topCpu, BY_CPU);
+        latestMemory = copyDescending(topMemory, BY_MEMORY);
+    }
+
+    // Adds a process to a heap, replacing its smallest entry once it's full
+    private void offer(PriorityQueue<Usage> heap, OSProcess process, int pid, double cpu, long resident) {
+        Usage usage = heap.size() < topCount ? spareOrNew() : heap.poll();
+        usage.name = process.getName();
+        usage.pid = pid;
+        usage.cpu = cpu;
+        usage.residentBytes = resident;
+        heap.add(usage);
+    }
+
+    private Usage spareOrNew() {
+        Usage usage = spareUsages.poll();
+        return usage == null ? new Usage() : usage;
+    }
+
+    // Copies the heap's entries, largest first. The entries themselves stay in the heap for reuse.
+    private static List<Usage> copyDescending(PriorityQueue<Usage> heap, Comparator<Usage> order) {
+        ArrayList<Usage> sorted = new ArrayList<>(heap.size());
+        for (Usage usage : heap) {
+            sorted.add(usage.copy());
+        }
+        sorted.sort(order.reversed());
+        return List.copyOf(sorted);
+    }
+
+    /* ======= *
+     * Reading *
+     * ======= */
+
+    /**
+     * Formats one of the latest lists, one process per line, such as
+     * "firefox (1234): 12.3% CPU, 512 MB".
+     *
+     * @param index {@link #CPU_INDEX} or {@link #MEMORY_INDEX}
+     * @return The formatted list, or null if the index isn't a list or nothing has been sampled
+     */
+    public String format(int index) {
+        List<Usage> usages = switch (index) {
+            case CPU_INDEX -> latestCpu;
+            case MEMORY_INDEX -> latestMemory;
+            default -> null;
+        };
+        if (usages == null || usages.isEmpty()) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Usage usage : usages) {
+            if (!sb.isEmpty()) {
+                sb.append(System.lineSeparator());
+            }
+            sb.append(usage.name).append(" (").append(usage.pid).append("): ")
+                    .append(String.format("%.1f%% CPU, %.0f MB", usage.cpu * 100, usage.residentBytes / 1e6));
+        }
+        return sb.toString();
+    }
+
+    // A process's use at one sample. Mutable, so heap entries can be reused.
+    private static class Usage {
+
+        private String name;
+        private int pid;
+        private double cpu;
+        private long residentBytes;
+
+        Usage copy() {
+            Usage copy = new Usage();
+            copy.name = name;
+            copy.pid = pid;
+            copy.cpu = cpu;
+            copy.residentBytes = residentBytes;
+            return copy;
+        }
+
+    }
+
+    /**
+     * A map of process ID to CPU time, in primitive arrays with open addressing,
+     * so that thousands of processes can be recorded without boxing.
+     */
+    private static class PidTimes {
+
+        private static final int EMPTY = -1;
+
+        private int[] pids;
+        private long[] times;
+        private int mask;
+
+        PidTimes(int expected) {
+            allocate(expected);
+        }
+
+        // Keeps the table at most half full
+        private void allocate(int expected) {
+            int size = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+            pids = new int[size];
+            times = new long[size];
+            mask = size - 1;
+            Arrays.fill(pids, EMPTY);
+        }
+
+        /**
+         * Removes every entry, making room for the expected number of processes.
+         */
+        void clear(int expected) {
+            if (expected * 2 > pids.length) {
+                allocate(expected);
+            }
+            else {
+                Arrays.fill(pids, EMPTY);
+            }
+        }
+
+        void put(int pid, long time) {
+            int i = slot(pid);
+            pids[i] = pid;
+            times[i] = time;
+        }
+
+        /**
+         * @return The CPU time of the process, or -1 if it isn't in the map
+         */
+        long get(int pid) {
+            int i = slot(pid);
+            return pids[i] == pid ? times[i] : -1;
+        }
+
+        // The slot holding the process, or the empty slot where it would go
+        private int slot(int pid) {
+            int i = (pid * 0x9E3779B9) & mask;
+            while (pids[i] != EMPTY && pids[i] != pid) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+    }
+
+}
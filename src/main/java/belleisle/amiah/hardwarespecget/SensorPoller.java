@@ -0,0 +1,263 @@
+package belleisle.amiah.hardwarespecget;
+
+import oshi.hardware.Sensors;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Polls the CPU temperature, fan speeds and CPU voltage at an adaptive rate.
+ * <p>
+ * Sensor reads can be slow, so they run on their own thread rather than the
+ * {@link LiveSampler}'s. While readings are changing, or the CPU is hot, sensors
+ * are polled at the minimum interval. Each poll that finds the readings stable
+ * doubles the interval, up to the maximum. The intervals and the hot temperature
+ * are set with the {@value #MIN_INTERVAL_PROPERTY}, {@value #MAX_INTERVAL_PROPERTY}
+ * and {@value #HOT_PROPERTY} system properties.
+ * Nothing is polled while the poller is inactive, which the application uses
+ * to stop polling while every sensors node is hidden.
+ * </p>
+ * <p>
+ * If the first poll finds no sensors, as on most virtual machines, polling
+ * stops for good and {@link #format()} returns null. A read that fails is
+ * retried with the same backoff as stable readings, keeping the previous readings.
+ * </p>
+ */
+public class SensorPoller {
+
+    public static final String MIN_INTERVAL_PROPERTY = "hardwarespecget.sensors.minIntervalMillis";
+    public static final String MAX_INTERVAL_PROPERTY = "hardwarespecget.sensors.maxIntervalMillis";
+    public static final String HOT_PROPERTY = "hardwarespecget.sensors.hotCelsius";
+    private static final long DEFAULT_MIN_INTERVAL = 1000;
+    private static final long DEFAULT_MAX_INTERVAL = 60000;
+    private static final double DEFAULT_HOT = 80;
+    // Smallest changes that count as the readings changing
+    private static final double TEMPERATURE_STEP = 1.0;
+    private static final double FAN_STEP = 0.05;
+    private static final double VOLTAGE_STEP = 0.05;
+
+    private static SensorPoller shared = null;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "sensor-poller");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Sensors sensors;
+    private final long minInterval;
+    private final long maxInterval;
+    private final double hotCelsius;
+
+    // Guarded by this
+    private boolean active = false;
+    private boolean unavailable = false;
+    private long interval;
+    private ScheduledFuture<?> nextPoll = null;
+    // Incremented whenever polling starts or stops, so a poll already running when
+    // polling restarts doesn't schedule a second chain of polls
+    private long generation = 0;
+    // The latest readings, or null before the first poll
+    private volatile Reading latest = null;
+
+    /**
+     * Creates an inactive poller, using the intervals and threshold set by system properties.
+     *
+     * @param sensors The sensors to poll
+     */
+    SensorPoller(Sensors sensors) {
+        this.sensors = sensors;
+        minInterval = Long.getLong(MIN_INTERVAL_PROPERTY, DEFAULT_MIN_INTERVAL);
+        maxInterval = Math.max(minInterval, Long.getLong(MAX_INTERVAL_PROPERTY, DEFAULT_MAX_INTERVAL));
+        String hot = System.getProperty(HOT_PROPERTY);
+        hotCelsius = hot == null ? DEFAULT_HOT : Double.parseDouble(hot);
+        interval = minInterval;
+    }
+
+    /**
+     * @return The poller shared by the UI, created inactive on first use
+     */
+    public static synchronized SensorPoller getShared() {
+        if (shared == null) {
+            shared = new SensorPoller(HardwareCollector.getHardware().getSensors());
+        }
+        return shared;
+    }
+
+    /**
+     * Starts or stops polling. Starting polls immediately at the fastest rate.
+     *
+     * @param active true to poll, false to stop polling
+     */
+    public synchronized void setActive(boolean active) {
+        if (this.active == active) {
+            return;
+        }
+        this.active = active;
+        generation++;
+        if (nextPoll != null) {
+            nextPoll.cancel(false);
+            nextPoll = null;
+        }
+        if (active && !unavailable) {
+            interval = minInterval;
+            schedule(0);
+        }
+    }
+
+    // Must hold the lock
+    private void schedule(long delay) {
+        long scheduledGeneration = generation;
+        nextPoll = scheduler.schedule(() -> poll(scheduledGeneration), delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return true if polling, false if inactive or there are no sensors
+     */
+    public synchronized boolean isPolling() {
+        return active && !unavailable;
+    }
+
+    /**
+     * @return The number of milliseconds until the next poll while polling
+     */
+    public synchronized long getInterval() {
+        return interval;
+    }
+
+    /**
+     * Formats the latest readings, such as "CPU 54.0 °C, fans 1200 RPM, 1.20 V".
+     * Readings a sensor doesn't report are left out.
+     *
+     * @return The formatted readings, or null if nothing has been polled or there are no sensors
+     */
+    public String format() {
+        Reading reading = latest;
+        return reading == null || !reading.isAvailable() ? null : reading.format();
+    }
+
+    /**
+     * Reads the sensors once, without polling.
+     *
+     * @param sensors The sensors to read
+     * @return The readings
+     */
+    static Reading read(Sensors sensors) {
+        return new Reading(sensors.getCpuTemperature(), sensors.getFanSpeeds(), sensors.getCpuVoltage());
+    }
+
+    // Runs on the poller thread
+    private void poll(long scheduledGeneration) {
+        Reading reading;
+        try {
+            reading = read(sensors);
+        }
+        catch (RuntimeException e) {
+            reading = null;
+        }
+        Reading previous = latest;
+        if (reading != null) {
+            latest = reading;
+        }
+
+        synchronized (this) {
+            if (!active || generation != scheduledGeneration) {
+                return;
+            }
+            // A failed read doesn't say whether there are sensors, so try again later
+            if (reading == null) {
+                interval = Math.min(interval * 2, maxInterval);
+                schedule(interval);
+                return;
+            }
+            // Nothing to poll, so don't keep trying
+            if (previous == null && !reading.isAvailable()) {
+                unavailable = true;
+                nextPoll = null;
+                return;
+            }
+            if (previous == null || reading.isHot(hotCelsius) || reading.differsFrom(previous)) {
+                interval = minInterval;
+            }
+            else {
+                interval = Math.min(interval * 2, maxInterval);
+            }
+            schedule(interval);
+        }
+    }
+
+    /**
+     * One read of every sensor. Values a sensor doesn't report are 0 or NaN.
+     *
+     * @param cpuTemperature The CPU temperature, in degrees Celsius
+     * @param fanSpeeds The speed of each fan, in RPM
+     * @param cpuVoltage The CPU voltage, in volts
+     */
+    record Reading(double cpuTemperature, int[] fanSpeeds, double cpuVoltage) {
+
+        boolean hasTemperature() {
+            return cpuTemperature > 0 && !Double.isNaN(cpuTemperature);
+        }
+
+        boolean hasVoltage() {
+            return cpuVoltage > 0 && !Double.isNaN(cpuVoltage);
+        }
+
+        boolean hasFans() {
+            for (int speed : fanSpeeds) {
+                if (speed > 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        boolean isAvailable() {
+            return hasTemperature() || hasVoltage() || hasFans();
+        }
+
+        boolean isHot(double hotCelsius) {
+            return hasTemperature() && cpuTemperature >= hotCelsius;
+        }
+
+        boolean differsFrom(Reading other) {
+            if (Math.abs(cpuTemperature - other.cpuTemperature) >= TEMPERATURE_STEP
+                    || Math.abs(cpuVoltage - other.cpuVoltage) >= VOLTAGE_STEP
+                    || fanSpeeds.length != other.fanSpeeds.length) {
+                return true;
+            }
+            for (int i = 0; i < fanSpeeds.length; i++) {
+                int larger = Math.max(fanSpeeds[i], other.fanSpeeds[i]);
+                if (larger > 0 && Math.abs(fanSpeeds[i] - other.fanSpeeds[i]) >= larger * FAN_STEP) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        String format() {
+            StringBuilder sb = new StringBuilder();
+            if (hasTemperature()) {
+                sb.append(String.format("CPU %.1f °C", cpuTemperature));
+            }
+            if (hasFans()) {
+                sb.append(sb.isEmpty() ? "Fans " : ", fans ");
+                boolean first = true;
+                for (int speed : fanSpeeds) {
+                    if (speed > 0) {
+                        sb.append(first ? "" : " / ").append(speed);
+                        first = false;
+                    }
+                }
+                sb.append(" RPM");
+            }
+            if (hasVoltage()) {
+                sb.append(sb.isEmpty() ? "" : ", ").append(String.format("%.2f V", cpuVoltage));
+            }
+            return sb.toString();
+        }
+
+    }
+
+}
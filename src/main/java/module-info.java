@@ -6,6 +6,23 @@ module belleisle.amiah.hardwarespecget {
     requires com.github.oshi;
     requires com.fasterxml.jackson.databind;
     requires java.desktop;
+    requires jdk.httpserver;
+    requires jdk.jfr;
+
+    uses belleisle.amiah.hardwarespecget.HardwareProbe;
+    provides belleisle.amiah.hardwarespecget.HardwareProbe with
+            belleisle.amiah.hardwarespecget.BuiltInProbes.Cpu,
+            belleisle.amiah.hardwarespecget.BuiltInProbes.CpuCore,
+            belleisle.amiah.hardwarespecget.BuiltInProbes.Gpu,
+            belleisle.amiah.hardwarespecget.BuiltInProbes.Ram,
+            belleisle.amiah.hardwarespecget.BuiltInProbes.Disk,
+            belleisle.amiah.hardwarespecget.BuiltInProbes.Network,
+            belleisle.amiah.hardwarespecget.BuiltInProbes.Motherboard,
+            belleisle.amiah.hardwarespecget.BuiltInProbes.Sensors,
+            belleisle.amiah.hardwarespecget.BuiltInProbes.Processes,
+            belleisle.amiah.hardwarespecget.BuiltInProbes.Os,
+            belleisle.amiah.hardwarespecget.BuiltInProbes.Kernel,
+            belleisle.amiah.hardwarespecget.BuiltInProbes.Username;
 
     opens belleisle.amiah.hardwarespecget to javafx.fxml;
     exports belleisle.amiah.hardwarespecget;
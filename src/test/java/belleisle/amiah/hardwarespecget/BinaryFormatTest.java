@@ -0,0 +1,105 @@
+package belleisle.amiah.hardwarespecget;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryFormatTest {
+
+    @TempDir
+    Path dir;
+
+    private static HardwareSnapshot sampleSnapshot() {
+        return HardwareSnapshot.makeBuilder()
+                .put(NodeInfo.HardwareType.DISK, List.of("Disk A", "Disk B"))
+                .putIdentities(NodeInfo.HardwareType.DISK, List.of("S1", "S2"))
+                .put(NodeInfo.HardwareType.RAM, List.of("5.77 / 6.31 GB"))
+                .putIdentities(NodeInfo.HardwareType.RAM, List.of("6305947648"))
+                .put(NodeInfo.HardwareType.CPU, List.of("Intel Xeon"))
+                .setTimestamp(1234)
+                .build();
+    }
+
+    private HardwareSnapshot roundTripBinary(HardwareSnapshot snapshot) throws IOException {
+        Path file = dir.resolve("snapshot.bin");
+        try (OutputStream out = Files.newOutputStream(file)) {
+            BinaryFormat.writeSnapshot(out, snapshot);
+        }
+        return HardwareSnapshot.read(file);
+    }
+
+    private HardwareSnapshot roundTripJson(HardwareSnapshot snapshot) throws IOException {
+        Path file = dir.resolve("snapshot.json");
+        try (OutputStream out = Files.newOutputStream(file);
+             JsonGenerator generator = new JsonFactory().createGenerator(out)) {
+            snapshot.writeJson(generator);
+        }
+        return HardwareSnapshot.read(file);
+    }
+
+    @Test
+    void binarySnapshotKeepsIdentities() throws IOException {
+        HardwareSnapshot original = sampleSnapshot();
+        HardwareSnapshot binary = roundTripBinary(original);
+
+        assertEquals(original.getIdentities(NodeInfo.HardwareType.DISK), binary.getIdentities(NodeInfo.HardwareType.DISK));
+        assertEquals(original.getIdentities(NodeInfo.HardwareType.RAM), binary.getIdentities(NodeInfo.HardwareType.RAM));
+        assertEquals(List.of(), binary.getIdentities(NodeInfo.HardwareType.CPU));
+    }
+
+    @Test
+    void binaryAndJsonSnapshotsOfTheSameHardwareHaveNoDiff() throws IOException {
+        HardwareSnapshot original = sampleSnapshot();
+        HardwareSnapshot binary = roundTripBinary(original);
+        HardwareSnapshot json = roundTripJson(original);
+
+        assertEquals(List.of(), HardwareDiff.diff(binary, json));
+        assertEquals(List.of(), HardwareDiff.diff(json, binary));
+        assertEquals(List.of(), HardwareDiff.diff(binary, original));
+    }
+
+    @Test
+    void binarySnapshotKeepsUnavailableAndStaleTypes() throws IOException {
+        HardwareSnapshot original = HardwareSnapshot.makeBuilder()
+                .put(NodeInfo.HardwareType.CPU, List.of("Intel Xeon"))
+                .put(NodeInfo.HardwareType.GPU, List.of("Old GPU"))
+                .markStale(NodeInfo.HardwareType.GPU)
+                .put(NodeInfo.HardwareType.NETWORK, List.of())
+                .markUnavailable(NodeInfo.HardwareType.SENSORS)
+                .build();
+        HardwareSnapshot binary = roundTripBinary(original);
+
+        assertTrue(binary.isUnavailable(NodeInfo.HardwareType.SENSORS));
+        assertTrue(binary.isStale(NodeInfo.HardwareType.GPU));
+        assertEquals(List.of("Old GPU"), binary.getValues(NodeInfo.HardwareType.GPU));
+        assertFalse(binary.isStale(NodeInfo.HardwareType.CPU));
+        assertTrue(binary.contains(NodeInfo.HardwareType.NETWORK));
+        assertEquals(original.getCollectedTypes(), binary.getCollectedTypes());
+    }
+
+    @Test
+    void snapshotWithoutIdentitiesIsMatchedByIndex() {
+        HardwareSnapshot original = sampleSnapshot();
+        // Like a snapshot read from a file written before identities were saved
+        HardwareSnapshot withoutIdentities = HardwareSnapshot.makeBuilder()
+                .put(NodeInfo.HardwareType.DISK, original.getValues(NodeInfo.HardwareType.DISK))
+                .put(NodeInfo.HardwareType.RAM, original.getValues(NodeInfo.HardwareType.RAM))
+                .put(NodeInfo.HardwareType.CPU, original.getValues(NodeInfo.HardwareType.CPU))
+                .build();
+
+        assertEquals(List.of(), HardwareDiff.diff(withoutIdentities, original));
+        assertEquals(List.of(), HardwareDiff.diff(original, withoutIdentities));
+    }
+
+}